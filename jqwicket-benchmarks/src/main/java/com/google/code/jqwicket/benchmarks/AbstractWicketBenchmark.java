@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.benchmarks;
+
+import com.google.code.jqwicket.JQContributionConfig;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.BaseWicketTester;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base class for all jqwicket benchmarks. Almost every statement builder consults the {@link JQContributionConfig}
+ * bound to the current wicket application, so each benchmark thread gets its own mock application, session and
+ * request cycle.
+ *
+ * @author mkalina
+ */
+@State(Scope.Thread)
+public abstract class AbstractWicketBenchmark {
+
+    private BaseWicketTester tester;
+
+    @Setup(Level.Trial)
+    public void startWicket() {
+        this.tester = new BaseWicketTester(new MockApplication());
+        JQContributionConfig.set(this.createConfig());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopWicket() {
+        if (this.tester != null)
+            this.tester.destroy();
+        this.tester = null;
+    }
+
+    /**
+     * Creates the contribution config used during the benchmark. Subclasses may override this method to benchmark
+     * alternative configurations.
+     *
+     * @return contribution config
+     */
+    protected JQContributionConfig createConfig() {
+        return new JQContributionConfig().withDefaultJQueryUi();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.benchmarks;
+
+import com.google.code.jqwicket.api.IJQFunction;
+import com.google.code.jqwicket.api.IJQStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.code.jqwicket.api.JQuery.$;
+import static com.google.code.jqwicket.api.JQuery.$f;
+
+/**
+ * Benchmarks {@link IJQFunction#toString()} for functions with a varying number of body statements.
+ *
+ * @author mkalina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionBenchmark extends AbstractWicketBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int statements;
+
+    private IJQStatement[] body;
+
+    private IJQFunction function;
+
+    @Setup
+    public void setUp() {
+        this.body = new IJQStatement[this.statements];
+        for (int i = 0; i < this.statements; i++) {
+            this.body[i] = $("#component" + i).chain("addClass", "active");
+        }
+        this.function = $f(this.body).withParams("event", "ui");
+    }
+
+    @Benchmark
+    public IJQFunction build() {
+        return $f(this.body);
+    }
+
+    @Benchmark
+    public String render() {
+        return this.function.toString();
+    }
+
+    @Benchmark
+    public String renderBodyOnly() {
+        return this.function.toString(true);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.benchmarks;
+
+import com.google.code.jqwicket.api.JQLiteral;
+import com.google.code.jqwicket.ui.tiptip.TipTipOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link JQLiteral} factory methods.
+ *
+ * @author mkalina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiteralBenchmark extends AbstractWicketBenchmark {
+
+    private String text;
+
+    private TipTipOptions options;
+
+    @Setup
+    public void setUp() {
+        this.text = "some literal text";
+        this.options = new TipTipOptions().activation("hover").keepAlive(true)
+                .maxWidth("200px");
+    }
+
+    @Benchmark
+    public JQLiteral dblquoted() {
+        return JQLiteral._(this.text);
+    }
+
+    @Benchmark
+    public JQLiteral quoted() {
+        return JQLiteral._quoted(this.text);
+    }
+
+    @Benchmark
+    public JQLiteral raw() {
+        return JQLiteral._raw(this.text);
+    }
+
+    @Benchmark
+    public JQLiteral options() {
+        return JQLiteral._(this.options);
+    }
+
+    @Benchmark
+    public String dblquotedToString() {
+        return JQLiteral._(this.text).toString();
+    }
+
+}
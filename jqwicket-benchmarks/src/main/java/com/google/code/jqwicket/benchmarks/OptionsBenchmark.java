@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.benchmarks;
+
+import com.google.code.jqwicket.ui.datepicker.DatePickerOptions;
+import com.google.code.jqwicket.ui.gmap.GMapMarker;
+import com.google.code.jqwicket.ui.gmap.GMapOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.code.jqwicket.api.JQuery.$f;
+
+/**
+ * Benchmarks {@link com.google.code.jqwicket.api.AbstractJQOptions#toString()} (and thus
+ * {@link com.google.code.jqwicket.Utils#toJson(java.util.Map)}) for flat and nested options, as well as appending
+ * options as plain {@link CharSequence}. The <tt>...AfterChange</tt> variants modify the options before every call and
+ * thus measure the actual serialization rather than a hit of the memoized JSON.
+ *
+ * @author mkalina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionsBenchmark extends AbstractWicketBenchmark {
+
+    private DatePickerOptions flat;
+
+    private GMapOptions nested;
+
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        this.flat = new DatePickerOptions().dateFormat("dd.mm.yy")
+                .changeMonth(true).changeYear(true).showButtonPanel(true)
+                .firstDay(1).numberOfMonths(2).minDate(-20).maxDate("+1M +10D")
+                .showOn("button").onSelectEvent($f("alert('selected');").withParams("dateText", "inst"));
+
+        GMapMarker[] markers = new GMapMarker[50];
+        for (int i = 0; i < markers.length; i++) {
+            markers[i] = new GMapMarker().latitude(48.1f + i / 100f)
+                    .longitude(11.5f + i / 100f).html("<b>Store " + i + "</b>");
+        }
+        this.nested = new GMapOptions("apikey").latitude(48.1f).longitude(11.5f)
+                .zoom(10).markers(markers);
+    }
+
+    @Benchmark
+    public String flatToString() {
+        return this.flat.toString();
+    }
+
+    @Benchmark
+    public String nestedToString() {
+        return this.nested.toString();
+    }
+
+    @Benchmark
+    public String flatToStringAfterChange() {
+        return this.flat.numberOfMonths(1 + (++this.counter & 1)).toString();
+    }
+
+    @Benchmark
+    public String nestedToStringAfterChange() {
+        return this.nested.zoom(10 + (++this.counter & 1)).toString();
+    }
+
+    @Benchmark
+    public StringBuilder flatAppendAsCharSequence() {
+        return new StringBuilder().append((CharSequence) this.flat);
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.benchmarks;
+
+import com.google.code.jqwicket.IJQHeaderContributor;
+import com.google.code.jqwicket.JQBehaviors;
+import com.google.code.jqwicket.JQContributionConfig;
+import com.google.code.jqwicket.JQContributionRenderer;
+import com.google.code.jqwicket.ui.datepicker.DatePickerBehavior;
+import com.google.code.jqwicket.ui.datepicker.DatePickerOptions;
+import com.google.code.jqwicket.ui.tiptip.TipTipBehavior;
+import com.google.code.jqwicket.ui.watermark.WatermarkBehavior;
+import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.internal.HeaderResponse;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.response.StringResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.code.jqwicket.api.JQuery.$;
+
+/**
+ * Benchmarks a full {@link JQContributionRenderer#renderHead(Component, org.apache.wicket.markup.html.IHeaderResponse)}
+ * over a synthetic page with a configurable number of widgets (datepickers, tooltips, watermarks and plain statement
+ * behaviors). Run with <tt>-prof gc</tt> to see the allocation rate per rendered page.
+ *
+ * @author mkalina
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderHeadBenchmark extends AbstractWicketBenchmark {
+
+    @Param({"1000"})
+    private int widgets;
+
+    @Param({"false", "true"})
+    private boolean yuiCompressor;
+
+    private List<IJQHeaderContributor> contributors;
+
+    private Component page;
+
+    @Setup
+    public void setUp() {
+        DatePickerOptions datePickerOptions = new DatePickerOptions()
+                .dateFormat("dd.mm.yy").changeMonth(true).changeYear(true);
+
+        this.contributors = new ArrayList<IJQHeaderContributor>(this.widgets);
+        for (int i = 0; i < this.widgets; i++) {
+            WebMarkupContainer c = new WebMarkupContainer("w" + i);
+            c.setMarkupId("w" + i);
+
+            Behavior b;
+            switch (i % 4) {
+                case 0:
+                    b = new DatePickerBehavior(datePickerOptions);
+                    break;
+                case 1:
+                    b = new TipTipBehavior();
+                    break;
+                case 2:
+                    b = new WatermarkBehavior("enter value " + i);
+                    break;
+                default:
+                    b = JQBehaviors.js($("#w" + i).chain("addClass", "ready"));
+            }
+            c.add(b);
+            this.contributors.add((IJQHeaderContributor) b);
+
+            if (this.page == null)
+                this.page = c;
+        }
+    }
+
+    @Override
+    protected JQContributionConfig createConfig() {
+        JQContributionConfig config = super.createConfig();
+        if (this.yuiCompressor)
+            config.useYuiJavascriptCompressor();
+        return config;
+    }
+
+    @Benchmark
+    public CharSequence renderHead() {
+        JQContributionRenderer renderer = JQContributionRenderer.get();
+        renderer.addContributors(this.contributors);
+
+        StringHeaderResponse response = new StringHeaderResponse();
+        renderer.renderHead(this.page, response);
+        return response.getBuffer();
+    }
+
+    /**
+     * Header response collecting the rendered head section into a string buffer.
+     */
+    static class StringHeaderResponse extends HeaderResponse {
+
+        private final StringResponse response = new StringResponse();
+
+        @Override
+        protected Response getRealResponse() {
+            return this.response;
+        }
+
+        CharSequence getBuffer() {
+            return this.response.getBuffer();
+        }
+    }
+
+}
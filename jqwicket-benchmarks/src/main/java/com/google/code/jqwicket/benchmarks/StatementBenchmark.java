@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.benchmarks;
+
+import com.google.code.jqwicket.api.IJQStatement;
+import com.google.code.jqwicket.ui.datepicker.DatePickerOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.code.jqwicket.api.JQuery.$;
+
+/**
+ * Benchmarks building and stringifying single statements via {@link com.google.code.jqwicket.api.JQuery#$()} and
+ * {@link IJQStatement#chain(CharSequence, CharSequence...)}.
+ *
+ * @author mkalina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBenchmark extends AbstractWicketBenchmark {
+
+    private DatePickerOptions options;
+
+    @Setup
+    public void setUp() {
+        this.options = new DatePickerOptions().dateFormat("dd.mm.yy")
+                .changeMonth(true).changeYear(true).showButtonPanel(true)
+                .firstDay(1).numberOfMonths(2);
+    }
+
+    @Benchmark
+    public IJQStatement selector() {
+        return $("#component1");
+    }
+
+    @Benchmark
+    public String selectorToString() {
+        return $("#component1").toString();
+    }
+
+    @Benchmark
+    public String chainStringArgs() {
+        return $("#component1").chain("css", "color", "red")
+                .chain("addClass", "active").toString();
+    }
+
+    @Benchmark
+    public String chainOptions() {
+        return $("#component1").chain("datepicker", this.options).toString();
+    }
+
+    @Benchmark
+    public String chainStatement() {
+        return $("#component1").chain("append", $("#component2").chain("html"))
+                .toString();
+    }
+
+}
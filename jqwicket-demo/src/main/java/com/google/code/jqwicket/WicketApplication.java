@@ -1,13 +1,31 @@
 package com.google.code.jqwicket;
 
 import com.google.code.jqwicket.dnd.DND2Page;
+import com.google.code.jqwicket.ui.uploadify.UploadifyUploadResource;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+import java.io.File;
 
 /**
  *
  */
 public class WicketApplication extends WebApplication {
 
+    public static final ResourceReference UPLOAD_RESOURCE = new ResourceReference(WicketApplication.class, "upload") {
+
+        private static final long serialVersionUID = 1L;
+
+        private final UploadifyUploadResource resource = new UploadifyUploadResource(new File(
+                System.getProperty("java.io.tmpdir"), "uploadify")).withMaxFileSize(100 * 1024 * 1024);
+
+        @Override
+        public IResource getResource() {
+            return resource;
+        }
+    };
+
     @Override
     protected void init() {
 
@@ -60,6 +78,8 @@ public class WicketApplication extends WebApplication {
 
         mountPage("dnd", DNDPage.class);
         mountPage("dnd2", DND2Page.class);
+
+        mountResource("_up", UPLOAD_RESOURCE);
     }
 
     /**
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+/**
+ * Listener notified about every measurement recorded by {@link JQMetrics}, e.g. to forward the numbers to an external
+ * monitoring system. Listeners are called synchronously on the rendering thread and thus should return quickly.
+ *
+ * @author mkalina
+ * @see JQMetrics#addListener(IJQMetricsListener)
+ */
+public interface IJQMetricsListener {
+
+    /**
+     * Called after a widget (or any other header contributor) has contributed its statements and resources.
+     *
+     * @param widgetType is the type of the contributing widget
+     * @param nanos      is the time spent in the contribution
+     */
+    void onWidgetRendered(Class<?> widgetType, long nanos);
+
+    /**
+     * Called after the jqwicket contributions of a page were rendered to the head section.
+     *
+     * @param nanos             is the time spent rendering the contributions
+     * @param inlineScriptBytes is the length of all inline scripts rendered to the page
+     * @param resources         is the number of javascript and css resources rendered to the page
+     */
+    void onPageRendered(long nanos, int inlineScriptBytes, int resources);
+
+    /**
+     * Called after a script was compressed.
+     *
+     * @param nanos            is the time spent compressing the script
+     * @param originalLength   is the length of the original script
+     * @param compressedLength is the length of the compressed script
+     */
+    void onJavaScriptCompressed(long nanos, int originalLength, int compressedLength);
+
+    /**
+     * Called after the collected statements of an ajax request were appended to the response as a single script
+     * block, see {@link JQAjaxScriptCollector}.
+     *
+     * @param statements is the number of statements in the block
+     * @param length     is the length of the rendered block
+     */
+    void onAjaxScriptRendered(int statements, int length);
+
+}
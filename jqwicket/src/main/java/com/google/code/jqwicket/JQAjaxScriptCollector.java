@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.request.cycle.RequestCycle;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects all jquery statements emitted during an ajax request and appends them to the response as a single,
+ * deduplicated (and optionally compressed) script block, instead of one evaluation per statement. Statements are
+ * rendered in the order they were first added, after all repainted components and their header contributions. The
+ * block is appended to the target once the response is written, i.e. after all scripts appended by the application
+ * (as widgets were initialized after them before), and before the scripts appended by later listeners.
+ *
+ * @author mkalina
+ */
+public class JQAjaxScriptCollector implements AjaxRequestTarget.IListener {
+
+    private static final MetaDataKey<JQAjaxScriptCollector> KEY = new MetaDataKey<JQAjaxScriptCollector>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final AjaxRequestTarget target;
+
+    private final Set<String> statements = new LinkedHashSet<String>();
+
+    private int length;
+
+    JQAjaxScriptCollector(AjaxRequestTarget target) {
+        this.target = target;
+    }
+
+    /**
+     * Returns the collector of the given ajax request target, which is registered as target listener on first use.
+     *
+     * @param target is the current ajax request target
+     * @return script collector for the given target
+     */
+    public static JQAjaxScriptCollector get(AjaxRequestTarget target) {
+        RequestCycle rc = RequestCycle.get();
+        JQAjaxScriptCollector collector = rc.getMetaData(KEY);
+        if (collector == null) {
+            collector = new JQAjaxScriptCollector(target);
+            target.addListener(collector);
+            rc.setMetaData(KEY, collector);
+        }
+        return collector;
+    }
+
+    /**
+     * Adds the given statement to the script block, unless the same statement was already added.
+     *
+     * @param statement
+     * @return this collector
+     */
+    public JQAjaxScriptCollector add(CharSequence statement) {
+        if (Utils.isBlank(statement))
+            return this;
+
+        String s = statement.toString();
+        if (this.statements.add(s))
+            this.length += s.length() + 1;
+        return this;
+    }
+
+    /**
+     * @return number of collected (distinct) statements
+     */
+    public int size() {
+        return this.statements.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onBeforeRespond(Map<String, Component> map, AjaxRequestTarget target) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onAfterRespond(Map<String, Component> map, AjaxRequestTarget.IJavaScriptResponse response) {
+        if (this.statements.isEmpty())
+            return;
+
+        StringBuilder script = new StringBuilder(this.length);
+        for (String s : this.statements) {
+            if (script.length() > 0)
+                script.append('\n');
+            script.append(s);
+        }
+        int size = this.statements.size();
+        this.statements.clear();
+        this.length = 0;
+
+        String block = String.valueOf(
+                JQContributionRenderer.compressJavaScript(JQContributionRenderer.getJavaScriptCompressor(), script));
+        // appended to the target rather than to the response, which would be evaluated before the appended scripts
+        this.target.appendJavaScript(block);
+
+        JQRenderContext context = JQRenderContext.get();
+        if (context.getMetrics() != null)
+            context.getMetrics().recordAjaxScript(size, block.length());
+        if (context.getTrace() != null)
+            context.getTrace().writeHeader();
+    }
+
+}
@@ -19,12 +19,16 @@ package com.google.code.jqwicket;
 import com.google.code.jqwicket.api.IJQStatement;
 import com.google.code.jqwicket.api.JQuery;
 import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.IHeaderResponse;
 import org.apache.wicket.request.resource.CssResourceReference;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -36,7 +40,18 @@ public class JQBehavior extends Behavior implements IJQHeaderContributor {
 
     private static final long serialVersionUID = 1L;
 
-    private Set<IJQStatement> statements;
+    /**
+     * Marks components having (or having had) at least one jquery behavior, so that
+     * {@link JQComponentOnBeforeRenderListener} can skip all other components without looking at their behaviors.
+     */
+    static final MetaDataKey<Boolean> BOUND_KEY = new MetaDataKey<Boolean>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    /**
+     * Statements are mutable and thus kept in a list, equal statements are de-duplicated by the contribution target.
+     */
+    private List<IJQStatement> statements;
 
     private Set<JavaScriptResourceReference> jsResourceReferences;
 
@@ -64,7 +79,7 @@ public class JQBehavior extends Behavior implements IJQHeaderContributor {
             return this;
 
         if (this.statements == null)
-            this.statements = new LinkedHashSet<IJQStatement>();
+            this.statements = new ArrayList<IJQStatement>();
 
         this.statements.addAll(Arrays.asList(statements));
         return this;
@@ -75,7 +90,7 @@ public class JQBehavior extends Behavior implements IJQHeaderContributor {
             return this;
 
         if (this.statements == null)
-            this.statements = new LinkedHashSet<IJQStatement>();
+            this.statements = new ArrayList<IJQStatement>();
 
         for (CharSequence stmt : statements) {
             this.statements.add(JQuery.js(stmt));
@@ -135,9 +150,21 @@ public class JQBehavior extends Behavior implements IJQHeaderContributor {
     public void bind(Component component) {
         this.component = component;
         this.component.setOutputMarkupId(true);
+        if (component.getMetaData(BOUND_KEY) == null)
+            component.setMetaData(BOUND_KEY, Boolean.TRUE);
         super.bind(component);
     }
 
+    /**
+     * Renders the jquery contributions collected in the current request, unless they were already rendered by another
+     * component, see {@link JQComponentOnBeforeRenderListener}.
+     */
+    @Override
+    public void renderHead(Component component, IHeaderResponse response) {
+        super.renderHead(component, response);
+        JQContributionRenderer.renderPendingContributions(response);
+    }
+
     /**
      * {@inheritDoc}
      */
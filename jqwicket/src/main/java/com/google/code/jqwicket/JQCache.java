@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple thread-safe cache holding at most given number of entries. Reads are lock-free, as soon as the cache grows
+ * beyond its maximum size the oldest entries (in order of insertion) are evicted. Entries removed explicitly stay in
+ * the insertion order queue until they are evicted or purged, but never evict an entry put again under the same key.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ * @author mkalina
+ */
+public class JQCache<K, V> {
+
+    private final int maxSize;
+
+    private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+
+    private final Queue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<Entry<K, V>>();
+
+    /**
+     * Number of removed entries still in the insertion order queue.
+     */
+    private final AtomicInteger removed = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize is the maximal number of cached entries
+     */
+    public JQCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param key
+     * @return cached value or <tt>null</tt> if nothing cached under the given key
+     */
+    public V get(K key) {
+        Entry<K, V> entry = this.entries.get(key);
+        if (entry != null)
+            this.hits.incrementAndGet();
+        else
+            this.misses.incrementAndGet();
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Same as {@link #get(Object)}, but not counted as hit or miss, e.g. to check again for a value computed by another
+     * thread in the meantime.
+     *
+     * @param key
+     * @return cached value or <tt>null</tt> if nothing cached under the given key
+     */
+    public V peek(K key) {
+        Entry<K, V> entry = this.entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Caches given value, evicting the oldest entries if the cache is full.
+     *
+     * @param key
+     * @param value
+     * @return the value actually cached under the given key, which is the already cached one if some other thread won
+     *         the race
+     */
+    public V put(K key, V value) {
+        Entry<K, V> entry = new Entry<K, V>(key, value);
+        Entry<K, V> previous = this.entries.putIfAbsent(key, entry);
+        if (previous != null)
+            return previous.value;
+
+        this.insertionOrder.add(entry);
+        while (this.entries.size() > this.maxSize) {
+            Entry<K, V> eldest = this.insertionOrder.poll();
+            if (eldest == null)
+                break;
+            if (!this.entries.remove(eldest.key, eldest))
+                this.removed.decrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Removes the entry of the given key if it is still mapped to the given value, e.g. after the value expired.
+     *
+     * @param key
+     * @param value
+     * @return true if the entry has been removed
+     */
+    public boolean remove(K key, V value) {
+        Entry<K, V> entry = this.entries.get(key);
+        if (entry == null || !entry.value.equals(value) || !this.entries.remove(key, entry))
+            return false;
+
+        if (this.removed.incrementAndGet() > this.maxSize)
+            this.purge();
+        return true;
+    }
+
+    /**
+     * Drops removed entries from the insertion order queue, so that it doesn't grow if entries are removed and put
+     * again without the cache ever getting full.
+     */
+    private void purge() {
+        for (Iterator<Entry<K, V>> it = this.insertionOrder.iterator(); it.hasNext(); ) {
+            Entry<K, V> entry = it.next();
+            if (this.entries.get(entry.key) != entry) {
+                it.remove();
+                this.removed.decrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return number of lookups which found a cached value
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return number of lookups which found nothing cached
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public void clear() {
+        this.entries.clear();
+        this.insertionOrder.clear();
+        this.removed.set(0);
+    }
+
+    /**
+     * Cached value, compared by identity so that only the very entry queued for eviction gets evicted.
+     */
+    private static final class Entry<K, V> {
+
+        private final K key;
+
+        private final V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -18,20 +18,38 @@ package com.google.code.jqwicket;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.application.IComponentOnBeforeRenderListener;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.request.cycle.AbstractRequestCycleListener;
+import org.apache.wicket.request.cycle.RequestCycle;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Wicket's {@link IComponentOnBeforeRenderListener} implementation responsible for adding header contributor with
- * appropriate jquery resources to the component before it will be rendered.
+ * Wicket's {@link IComponentOnBeforeRenderListener} implementation responsible for collecting the jquery contributions
+ * of all components before they will be rendered.
+ * <p/>
+ * The collected contributions are rendered all at once by the first contributing component rendering its header, i.e.
+ * after the header contributions of the page and of the components rendered before, for pages as well as for ajax
+ * requests. Components bound to a {@link JQBehavior} render them through the behavior, all other components
+ * implementing {@link IJQHeaderContributor} get a temporary behavior for the current render.
+ * <p/>
+ * Components neither implementing {@link IJQHeaderContributor} nor ever bound to a {@link JQBehavior} are skipped
+ * without allocating anything. The number of inspected and actually contributing components is available via
+ * {@link #getInspectedComponents()} and {@link #getContributingComponents()}. Components are counted per request (see
+ * {@link JQRenderContext}), the totals are updated once at the end of every request.
  *
  * @author mkalina
  */
 public class JQComponentOnBeforeRenderListener implements
         IComponentOnBeforeRenderListener {
 
+    private final AtomicLong inspectedComponents = new AtomicLong();
+
+    private final AtomicLong contributingComponents = new AtomicLong();
+
     public JQComponentOnBeforeRenderListener() {
         this(new JQContributionConfig());
     }
@@ -47,34 +65,109 @@ public class JQComponentOnBeforeRenderListener implements
         if (component == null)
             return;
 
-        if (IJQHeaderContributor.class.isAssignableFrom(component.getClass())) {
-            addJQueryHeaderContributor(component, (IJQHeaderContributor) component);
+        JQRenderContext context = JQRenderContext.get();
+        if (context.componentInspected() == 1)
+            this.recordAtEndOfRequest(context);
+
+        boolean contributor = component instanceof IJQHeaderContributor;
+        if (!contributor && component.getMetaData(JQBehavior.BOUND_KEY) == null)
+            return;
+
+        JQRequestTrace trace = context.getTrace();
+        long start = trace != null ? System.nanoTime() : 0;
+
+        boolean contributed = false;
+        if (contributor) {
+            contributed = addJQueryHeaderContributor(component, (IJQHeaderContributor) component);
+            if (component.getBehaviors(JQBehavior.class).isEmpty()
+                    && component.getBehaviors(PendingContributionsBehavior.class).isEmpty())
+                component.add(PendingContributionsBehavior.INSTANCE);
         }
 
-        addJQueryHeaderContributor(component, findJQueryBehaviors(component));
+        if (component.getMetaData(JQBehavior.BOUND_KEY) != null)
+            contributed |= addJQueryHeaderContributor(component, component.getBehaviors(JQBehavior.class));
+
+        if (contributed)
+            context.componentContributed();
+
+        if (trace != null) {
+            trace.captureResponse();
+            trace.add(JQRequestTrace.Phase.COLLECT, System.nanoTime() - start);
+        }
     }
 
-    private Collection<JQBehavior> findJQueryBehaviors(Component component) {
-        return new LinkedHashSet<JQBehavior>(component.getBehaviors(JQBehavior.class));
+    /**
+     * @return number of components inspected by this listener in all requests finished so far
+     */
+    public long getInspectedComponents() {
+        return this.inspectedComponents.get();
     }
 
-    private void addJQueryHeaderContributor(Component component, IJQHeaderContributor... contributor) {
+    /**
+     * @return number of inspected components, which actually contributed to the header
+     */
+    public long getContributingComponents() {
+        return this.contributingComponents.get();
+    }
 
-        if (Utils.isEmpty(contributor))
+    /**
+     * Adds the components counted by the given render context to the totals at the end of the current request.
+     */
+    private void recordAtEndOfRequest(final JQRenderContext context) {
+        // components are counted within request cycles only
+        RequestCycle rc = RequestCycle.get();
+        if (rc == null)
             return;
 
-        addJQueryHeaderContributor(component, Arrays.asList(contributor));
+        rc.getListeners().add(new AbstractRequestCycleListener() {
+            @Override
+            public void onEndRequest(RequestCycle cycle) {
+                record(context);
+            }
+        });
     }
 
-    private void addJQueryHeaderContributor(Component component,
-                                            Collection<? extends IJQHeaderContributor> contributors) {
+    private void record(JQRenderContext context) {
+        this.inspectedComponents.addAndGet(context.getInspectedComponents());
+        this.contributingComponents.addAndGet(context.getContributingComponents());
+    }
+
+    private boolean addJQueryHeaderContributor(Component component, IJQHeaderContributor... contributor) {
+
+        if (Utils.isEmpty(contributor))
+            return false;
+
+        return addJQueryHeaderContributor(component, Arrays.asList(contributor));
+    }
+
+    private boolean addJQueryHeaderContributor(Component component,
+                                               Collection<? extends IJQHeaderContributor> contributors) {
 
         if (Utils.isEmpty(contributors))
-            return;
+            return false;
+
+        JQContributionRenderer.get().addContributors(contributors);
+        return true;
+    }
 
-        JQContributionRenderer renderer = JQContributionRenderer.get();
-        renderer.addContributors(contributors);
-        component.add(renderer);
+    /**
+     * Temporary behavior rendering the collected contributions for components not bound to any {@link JQBehavior}.
+     */
+    private static class PendingContributionsBehavior extends Behavior {
+
+        private static final long serialVersionUID = 1L;
+
+        static final PendingContributionsBehavior INSTANCE = new PendingContributionsBehavior();
+
+        @Override
+        public void renderHead(Component component, IHeaderResponse response) {
+            JQContributionRenderer.renderPendingContributions(response);
+        }
+
+        @Override
+        public boolean isTemporary(Component component) {
+            return true;
+        }
     }
 
 }
@@ -37,6 +37,10 @@ public class JQContributionConfig implements Serializable {
         private static final long serialVersionUID = 1L;
     };
 
+    private static final int defaultWidgetScriptCacheSize = 1000;
+
+    private static final int defaultResourceBundlerSize = 100;
+
     private static final CharSequence defaultJQueryCoreJsUrl = "http://ajax.googleapis.com/ajax/libs/" +
             "jquery/1.7.1/jquery.min.js";
 
@@ -66,12 +70,36 @@ public class JQContributionConfig implements Serializable {
 
     private boolean renderCssResourceRefsBeforeUrls = false;
 
+    private int widgetScriptCacheSize = defaultWidgetScriptCacheSize;
+
+    private transient volatile JQWidgetScriptCache widgetScriptCache;
+
+    private boolean bundleJavascript = false;
+
+    private boolean bundleCss = false;
+
+    private boolean loadJavascriptAsync = false;
+
+    private boolean groupWidgetInitializations = false;
+
+    private String resourceBundleSecret;
+
+    private transient volatile JQResourceBundler resourceBundler;
+
+    private boolean metricsEnabled = false;
+
+    private transient volatile JQMetrics metrics;
+
+    private boolean serverTimingEnabled = false;
+
     public static JQContributionConfig get() {
         return Application.get().getMetaData(configKey);
     }
 
     public static void set(JQContributionConfig config) {
         Application.get().setMetaData(configKey, config);
+        JQResourceBundler.registerReferences(Application.get());
+        JQRenderContext.reset();
     }
 
     public JQContributionConfig() {
@@ -168,6 +196,112 @@ public class JQContributionConfig implements Serializable {
         return this;
     }
 
+    /**
+     * Configure jqwicket to combine all javascript resource references rendered by a page into a single (compressed)
+     * resource, see {@link JQResourceBundler}. Bundles are served with far-future cache headers, their urls change
+     * with their content. Javascript resource urls are rendered as usual.
+     *
+     * @return this contribution config
+     */
+    public JQContributionConfig bundleJavascript() {
+        this.bundleJavascript = true;
+        return this;
+    }
+
+    /**
+     * Configure jqwicket to combine all css resource references rendered by a page into a single (compressed)
+     * resource, see {@link JQResourceBundler}. Relative <tt>url()</tt>-s of the stylesheets are rewritten to still
+     * resolve against the original resource location. Css resource urls are rendered as usual.
+     *
+     * @return this contribution config
+     */
+    public JQContributionConfig bundleCss() {
+        this.bundleCss = true;
+        return this;
+    }
+
+    /**
+     * Configure jqwicket to load javascript resources asynchronously. Instead of blocking <tt>&lt;script&gt;</tt> tags
+     * a tiny inline loader is rendered, which loads jquery core, jquery ui and all plugins in parallel (executing them
+     * in this order) and runs the "documentReady"-script as soon as all of them are loaded.
+     * <p/>
+     * Only the jqwicket "documentReady"-script waits for the loader. Inline and "domready" scripts rendered by other
+     * (non-jqwicket) components are not deferred and may run before jquery is loaded, so they must not depend on
+     * jquery or any plugin. The same holds for statements added outside of the "documentReady"-script, which always
+     * run before the javascript resources, with or without async loading.
+     *
+     * @return this contribution config
+     */
+    public JQContributionConfig loadJavascriptAsync() {
+        this.loadJavascriptAsync = true;
+        return this;
+    }
+
+    /**
+     * Configure jqwicket to merge initializations of the same widget with identical options into a single call using
+     * a multi-selector, e.g. <tt>$("#id1,#id2").tipTip({...})</tt> instead of one statement per component. Only
+     * initializations not separated by other statements are merged and each element still gets its widgets
+     * initialized in the original order. Initializations rendered by ajax requests are never grouped.
+     *
+     * @return this contribution config
+     */
+    public JQContributionConfig groupWidgetInitializations() {
+        this.groupWidgetInitializations = true;
+        return this;
+    }
+
+    /**
+     * Configure jqwicket to record rendering metrics (render time per widget type, inline script bytes and resources
+     * per page, compression time, ajax script blocks, cache hit rates), see {@link JQMetrics}. The metrics are
+     * registered as JMX bean of the application.
+     *
+     * @return this contribution config
+     */
+    public JQContributionConfig enableMetrics() {
+        this.metricsEnabled = true;
+        return this;
+    }
+
+    /**
+     * Configure jqwicket to trace the time spent in its render phases (contributor collection, statement building,
+     * compression, resource tags) per request. The trace is written as <tt>Server-Timing</tt> response header and
+     * logged at debug level, see {@link JQRequestTrace}.
+     *
+     * @return this contribution config
+     */
+    public JQContributionConfig enableServerTiming() {
+        this.serverTimingEnabled = true;
+        return this;
+    }
+
+    /**
+     * Configure the maximal number of widget invocations (widget name + options) cached by the application, see
+     * {@link JQWidgetScriptCache}. Use <tt>0</tt> to disable the cache.<br/> Default size is 1000.
+     *
+     * @param size is the maximal number of cached widget invocations
+     * @return this contribution config
+     */
+    public JQContributionConfig withWidgetScriptCacheSize(int size) {
+        this.widgetScriptCacheSize = size;
+        this.widgetScriptCache = null;
+        return this;
+    }
+
+    /**
+     * Configure the secret the resource lists of bundle urls are signed with, see {@link JQResourceBundler}. Bundles
+     * are only served for resource lists signed with this secret, so all nodes of a cluster must share it.<br/> By
+     * default a random secret is generated on startup, bundles are then only served for resource lists rendered by
+     * the running application.
+     *
+     * @param secret is the secret to sign bundle urls with
+     * @return this contribution config
+     */
+    public JQContributionConfig withResourceBundleSecret(String secret) {
+        this.resourceBundleSecret = secret;
+        this.resourceBundler = null;
+        return this;
+    }
+
     public CharSequence getJqueryCoreJsUrl() {
         return jqueryCoreJsUrl;
     }
@@ -207,4 +341,87 @@ public class JQContributionConfig implements Serializable {
     public boolean isRenderCssResourceRefsBeforeUrls() {
         return renderCssResourceRefsBeforeUrls;
     }
+
+    public int getWidgetScriptCacheSize() {
+        return widgetScriptCacheSize;
+    }
+
+    public String getResourceBundleSecret() {
+        return resourceBundleSecret;
+    }
+
+    public boolean isBundleJavascript() {
+        return bundleJavascript;
+    }
+
+    public boolean isBundleCss() {
+        return bundleCss;
+    }
+
+    public boolean isLoadJavascriptAsync() {
+        return loadJavascriptAsync;
+    }
+
+    public boolean isGroupWidgetInitializations() {
+        return groupWidgetInitializations;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public boolean isServerTimingEnabled() {
+        return serverTimingEnabled;
+    }
+
+    /**
+     * @return application-wide registry of resource bundles
+     */
+    public JQResourceBundler getResourceBundler() {
+        JQResourceBundler bundler = this.resourceBundler;
+        if (bundler == null) {
+            synchronized (this) {
+                bundler = this.resourceBundler;
+                if (bundler == null) {
+                    bundler = new JQResourceBundler(defaultResourceBundlerSize, this.resourceBundleSecret);
+                    this.resourceBundler = bundler;
+                }
+            }
+        }
+        return bundler;
+    }
+
+    /**
+     * @return application-wide widget invocation cache or <tt>null</tt> if disabled
+     */
+    public JQWidgetScriptCache getWidgetScriptCache() {
+        JQWidgetScriptCache cache = this.widgetScriptCache;
+        if (cache == null && this.widgetScriptCacheSize > 0) {
+            cache = new JQWidgetScriptCache(this.widgetScriptCacheSize);
+            this.widgetScriptCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * @return application-wide metrics or <tt>null</tt> if disabled
+     */
+    public JQMetrics getMetrics() {
+        if (!this.metricsEnabled)
+            return null;
+
+        JQMetrics metrics = this.metrics;
+        if (metrics == null) {
+            synchronized (this) {
+                metrics = this.metrics;
+                if (metrics == null) {
+                    metrics = new JQMetrics(this);
+                    if (Application.exists())
+                        metrics.register(Application.get());
+                    this.metrics = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
 }
@@ -18,16 +18,18 @@ package com.google.code.jqwicket;
 
 import com.google.code.jqwicket.api.IJQStatement;
 import com.google.code.jqwicket.api.JQuery;
-import org.apache.wicket.Application;
 import org.apache.wicket.Component;
 import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.javascript.IJavaScriptCompressor;
+import org.apache.wicket.markup.html.DecoratingHeaderResponse;
 import org.apache.wicket.markup.html.IHeaderResponse;
 import org.apache.wicket.request.cycle.RequestCycle;
-import org.apache.wicket.request.resource.CssResourceReference;
-import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.ResourceReference;
 
+import java.io.IOException;
 import java.util.*;
 
 import static com.google.code.jqwicket.Utils.isEmpty;
@@ -42,6 +44,32 @@ public class JQContributionRenderer extends Behavior {
 
     private static final long serialVersionUID = 1L;
 
+    private static final String LOADER_SCRIPT_ID = "jqwicket-loader";
+
+    /**
+     * Client side loader used in async mode: loads given scripts in parallel (executing them in the given order, each
+     * script only once per page) and runs the callback as soon as all of them are loaded.
+     */
+    private static final String LOADER_SCRIPT = "if(!window.JQWicketLoader){window.JQWicketLoader=(function(d){"
+            + "var loaded={};"
+            + "function load(urls,callback){"
+            + "var pending=1,head=d.getElementsByTagName('head')[0];"
+            + "function done(){if(--pending===0)callback();}"
+            + "for(var i=0;i<urls.length;i++){"
+            + "var u=urls[i];"
+            + "if(loaded[u]===true)continue;"
+            + "pending++;"
+            + "if(loaded[u]){loaded[u].push(done);continue;}"
+            + "loaded[u]=[done];"
+            + "var s=d.createElement('script');s.src=u;s.async=false;"
+            + "s.onload=s.onerror=s.onreadystatechange=(function(u,s){return function(){"
+            + "if(s.readyState&&!/loaded|complete/.test(s.readyState))return;"
+            + "s.onload=s.onerror=s.onreadystatechange=null;"
+            + "var c=loaded[u];loaded[u]=true;for(var j=0;j<c.length;j++)c[j]();};})(u,s);"
+            + "head.appendChild(s);}"
+            + "done();}"
+            + "return {load:load};})(document);}";
+
     private static final MetaDataKey<JQContributionRenderer> KEY = new MetaDataKey<JQContributionRenderer>() {
         private static final long serialVersionUID = 1L;
     };
@@ -55,8 +83,35 @@ public class JQContributionRenderer extends Behavior {
         return target;
     }
 
+    /**
+     * Renders all contributions collected so far in the current request (if any) to the given header response.
+     *
+     * @param response
+     */
+    static void renderPendingContributions(IHeaderResponse response) {
+        RequestCycle rc = RequestCycle.get();
+        if (rc == null)
+            return;
+
+        JQContributionRenderer renderer = rc.getMetaData(KEY);
+        if (renderer != null)
+            renderer.renderHead(null, response);
+    }
+
     private Set<IJQHeaderContributor> contributors;
 
+    /**
+     * Render context of the current {@link #renderHead(Component, IHeaderResponse)} call.
+     */
+    private transient JQRenderContext context;
+
+    /**
+     * Number of inline script bytes and resources rendered by the current call, recorded if metrics are enabled.
+     */
+    private transient int renderedScriptBytes;
+
+    private transient int renderedResources;
+
     JQContributionRenderer() {
     }
 
@@ -90,41 +145,235 @@ public class JQContributionRenderer extends Behavior {
         if (isEmpty(this.contributors))
             return;
 
-        JQContributionConfig config = JQContributionConfig.get();
+        this.context = JQRenderContext.get();
+        this.renderedScriptBytes = 0;
+        this.renderedResources = 0;
+        JQMetrics metrics = this.context.getMetrics();
+        JQRequestTrace trace = this.context.getTrace();
+        long start = metrics != null || trace != null ? System.nanoTime() : 0;
+
+        JQContributionConfig config = this.context.getConfig();
         JQHeaderContributionTarget target = new JQHeaderContributionTarget();
         for (IJQHeaderContributor c : this.contributors) {
-            c.contribute(target);
+            if (metrics == null) {
+                c.contribute(target);
+            } else {
+                long contributionStart = System.nanoTime();
+                c.contribute(target);
+                metrics.recordWidgetRender(c.getClass(), System.nanoTime() - contributionStart);
+            }
         }
 
-        if (!target.hasResourcesToRender())
+        if (trace != null)
+            trace.add(JQRequestTrace.Phase.STATEMENTS, System.nanoTime() - start);
+
+        if (!target.hasResourcesToRender()) {
+            this.recordRender(metrics, trace, start, false);
             return;
+        }
 
         // 1. render global javascripts
         this.renderJavaScriptOutsideDocumentReady(response, target.getJQStatementsOutsideDocumentReady());
 
+        // in async mode the javascript resources are collected and loaded by the client side loader, ajax responses
+        // load them before evaluating any script anyway
+        AjaxRequestTarget ajaxTarget = AjaxRequestTarget.get();
+        ScriptCollectingHeaderResponse scripts = config.isLoadJavascriptAsync() && ajaxTarget == null ?
+                new ScriptCollectingHeaderResponse(response) : null;
+        IHeaderResponse jsResponse = scripts != null ? scripts : response;
+
         // 2. render resources from global config
-        this.renderJsResources(response,
-                Arrays.asList(config.getJqueryCoreJsUrl()), Arrays.asList(config.getJqueryCoreJsResourceReference()));
-        this.renderJsResources(response,
-                Arrays.asList(config.getJqueryUiJsUrl()), Arrays.asList(config.getJqueryUiJsResourceReference()));
-        this.renderCssResources(response,
-                Arrays.asList(config.getJqueryUiCssUrl()), Arrays.asList(config.getJqueryUiCssResourceReference()));
+        long resourcesStart = trace != null ? System.nanoTime() : 0;
+        if (config.isBundleJavascript()) {
+            this.renderJsBundle(jsResponse, target);
+        } else {
+            this.renderJsResources(jsResponse,
+                    Arrays.asList(config.getJqueryCoreJsUrl()), Arrays.asList(config.getJqueryCoreJsResourceReference()));
+            this.renderJsResources(jsResponse,
+                    Arrays.asList(config.getJqueryUiJsUrl()), Arrays.asList(config.getJqueryUiJsResourceReference()));
+        }
+        if (config.isBundleCss()) {
+            this.renderCssBundle(response, target);
+        } else {
+            this.renderCssResources(response,
+                    Arrays.asList(config.getJqueryUiCssUrl()), Arrays.asList(config.getJqueryUiCssResourceReference()));
+        }
 
 
         // 3. render resource explicitly added to the target
-        this.renderJsResources(response, target.getJsResourceUrls(), target.getJsResourceReferences());
-        this.renderCssResources(response, target.getCssResourceUrls(), target.getCssResourceReferences());
+        if (!config.isBundleJavascript())
+            this.renderJsResources(jsResponse, target.getJsResourceUrls(), target.getJsResourceReferences());
+        if (!config.isBundleCss())
+            this.renderCssResources(response, target.getCssResourceUrls(), target.getCssResourceReferences());
+        if (trace != null)
+            trace.add(JQRequestTrace.Phase.RESOURCES, System.nanoTime() - resourcesStart);
 
         // 4. render "documentReady"-script
-        this.renderJavaScriptInsideDocumentReady(response, target.getJQStatementsInsideDocumentReady());
+        Collection<IJQStatement> statements = target.getJQStatementsInsideDocumentReady();
+        // components rendered by an ajax request hand their initializations to the ajax collector one by one (see
+        // JQComponentBehavior#beforeRender), grouping them would initialize the widgets twice
+        if (config.isGroupWidgetInitializations() && ajaxTarget == null)
+            statements = this.groupWidgetInitializations(target, statements);
+
+        if (ajaxTarget != null)
+            this.collectAjaxStatements(ajaxTarget, statements);
+        else if (scripts != null)
+            this.renderAsyncLoader(response, scripts.getUrls(), statements);
+        else
+            this.renderJavaScriptInsideDocumentReady(response, statements);
+
+        this.recordRender(metrics, trace, start, ajaxTarget == null);
 
         // clear contributors after rendering
         this.contributors.clear();
     }
 
+    /**
+     * Records the render time (and for full page renders the page metrics) and writes the trace header.
+     */
+    private void recordRender(JQMetrics metrics, JQRequestTrace trace, long start, boolean page) {
+        if (metrics == null && trace == null)
+            return;
+
+        long nanos = System.nanoTime() - start;
+        if (metrics != null && page)
+            metrics.recordPageRender(nanos, this.renderedScriptBytes, this.renderedResources);
+        if (trace != null) {
+            trace.add(JQRequestTrace.Phase.RENDER, nanos);
+            trace.writeHeader();
+        }
+    }
+
+    /**
+     * Merges initializations of elements (selected by id) using the same widget invocation into a single statement with
+     * a multi-selector. A statement joins an earlier group only if no plain statement lies in between (plain statements
+     * may depend on any preceding initialization) and if the element was not initialized by a group following that
+     * group, so every element still gets its widgets initialized in the original order.
+     */
+    private List<IJQStatement> groupWidgetInitializations(JQHeaderContributionTarget target,
+                                                         Collection<IJQStatement> statements) {
+
+        List<WidgetGroup> groups = new ArrayList<WidgetGroup>(statements.size());
+        Map<String, WidgetGroup> openGroups = new HashMap<String, WidgetGroup>();
+        Map<String, Integer> lastGroups = new HashMap<String, Integer>();
+
+        for (IJQStatement statement : statements) {
+            JQHeaderContributionTarget.WidgetInvocation widget = target.getWidgetInvocation(statement);
+            if (widget == null || !isIdSelector(widget.getSelector())) {
+                groups.add(new WidgetGroup(statement, null, groups.size()));
+                openGroups.clear();
+                lastGroups.clear();
+                continue;
+            }
+
+            WidgetGroup group = openGroups.get(widget.getInvocation());
+            Integer last = lastGroups.get(widget.getSelector());
+            if (group == null || (last != null && last > group.index)) {
+                group = new WidgetGroup(statement, widget.getInvocation(), groups.size());
+                groups.add(group);
+                openGroups.put(widget.getInvocation(), group);
+            }
+            group.selectors.add(widget.getSelector());
+            lastGroups.put(widget.getSelector(), group.index);
+        }
+
+        List<IJQStatement> result = new ArrayList<IJQStatement>(groups.size());
+        for (WidgetGroup group : groups) {
+            result.add(group.toStatement());
+        }
+        return result;
+    }
+
+    private static boolean isIdSelector(String selector) {
+        if (selector.length() < 2 || selector.charAt(0) != '#')
+            return false;
+
+        for (int i = 1; i < selector.length(); i++) {
+            char c = selector.charAt(i);
+            if (c == ',' || c == ' ' || c == '.' || c == ':' || c == '[' || c == '>')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Renders the javascript resources (jquery core/ui as well as those added to the target) in the same order as
+     * without bundling, but with each sequence of resource references between two urls rendered as a bundle, see
+     * {@link JQResourceBundler}.
+     */
+    private void renderJsBundle(IHeaderResponse response, JQHeaderContributionTarget target) {
+        JQContributionConfig config = this.context.getConfig();
+        boolean refsBeforeUrls = config.isRenderJavascriptResourceRefsBeforeUrls();
+
+        List<Object> resources = new ArrayList<Object>();
+        addResources(resources, Arrays.asList(config.getJqueryCoreJsUrl()),
+                Arrays.asList(config.getJqueryCoreJsResourceReference()), refsBeforeUrls);
+        addResources(resources, Arrays.asList(config.getJqueryUiJsUrl()),
+                Arrays.asList(config.getJqueryUiJsResourceReference()), refsBeforeUrls);
+        addResources(resources, target.getJsResourceUrls(), target.getJsResourceReferences(), refsBeforeUrls);
+
+        List<ResourceReference> refs = new ArrayList<ResourceReference>();
+        for (Object resource : resources) {
+            if (resource instanceof ResourceReference) {
+                refs.add((ResourceReference) resource);
+            } else {
+                this.renderJsResourcesRefs(response, config.getResourceBundler().bundleJavaScript(refs));
+                this.renderJsResourcesUrls(response, Arrays.asList((CharSequence) resource));
+                refs.clear();
+            }
+        }
+        this.renderJsResourcesRefs(response, config.getResourceBundler().bundleJavaScript(refs));
+    }
+
+    /**
+     * Renders the css resources (jquery ui as well as those added to the target) in the same order as without
+     * bundling, but with each sequence of resource references between two urls rendered as a bundle, see
+     * {@link JQResourceBundler}.
+     */
+    private void renderCssBundle(IHeaderResponse response, JQHeaderContributionTarget target) {
+        JQContributionConfig config = this.context.getConfig();
+        boolean refsBeforeUrls = config.isRenderCssResourceRefsBeforeUrls();
+
+        List<Object> resources = new ArrayList<Object>();
+        addResources(resources, Arrays.asList(config.getJqueryUiCssUrl()),
+                Arrays.asList(config.getJqueryUiCssResourceReference()), refsBeforeUrls);
+        addResources(resources, target.getCssResourceUrls(), target.getCssResourceReferences(), refsBeforeUrls);
+
+        List<ResourceReference> refs = new ArrayList<ResourceReference>();
+        for (Object resource : resources) {
+            if (resource instanceof ResourceReference) {
+                refs.add((ResourceReference) resource);
+            } else {
+                this.renderCssResourcesRefs(response, config.getResourceBundler().bundleCss(refs));
+                this.renderCssResourcesUrls(response, Arrays.asList((CharSequence) resource));
+                refs.clear();
+            }
+        }
+        this.renderCssResourcesRefs(response, config.getResourceBundler().bundleCss(refs));
+    }
+
+    /**
+     * Adds the given urls and references (skipping <tt>null</tt>-s) in order of rendering.
+     */
+    private static void addResources(List<Object> resources, Collection<CharSequence> urls,
+                                     Collection<? extends ResourceReference> refs, boolean refsBeforeUrls) {
+        if (refsBeforeUrls)
+            addIfNotNull(resources, refs);
+        addIfNotNull(resources, urls);
+        if (!refsBeforeUrls)
+            addIfNotNull(resources, refs);
+    }
+
+    private static void addIfNotNull(List<Object> resources, Collection<?> elements) {
+        for (Object element : elements) {
+            if (element != null)
+                resources.add(element);
+        }
+    }
+
     private void renderJsResources(IHeaderResponse response, Collection<CharSequence> urls,
-                                   Collection<JavaScriptResourceReference> refs) {
-        JQContributionConfig config = JQContributionConfig.get();
+                                   Collection<? extends ResourceReference> refs) {
+        JQContributionConfig config = this.context.getConfig();
         if (config.isRenderJavascriptResourceRefsBeforeUrls()) {
             this.renderJsResourcesRefs(response, refs);
             this.renderJsResourcesUrls(response, urls);
@@ -135,8 +384,8 @@ public class JQContributionRenderer extends Behavior {
     }
 
     private void renderCssResources(IHeaderResponse response, Collection<CharSequence> urls,
-                                    Collection<CssResourceReference> refs) {
-        JQContributionConfig config = JQContributionConfig.get();
+                                    Collection<? extends ResourceReference> refs) {
+        JQContributionConfig config = this.context.getConfig();
         if (config.isRenderCssResourceRefsBeforeUrls()) {
             this.renderCssResourcesRefs(response, refs);
             this.renderCssResourcesUrls(response, urls);
@@ -150,27 +399,41 @@ public class JQContributionRenderer extends Behavior {
     private void renderJsResourcesUrls(IHeaderResponse response, Collection<CharSequence> resources) {
         for (CharSequence url : resources) {
             response.renderJavaScriptReference(determineResourcesUrl(url));
+            this.renderedResources++;
         }
     }
 
-    private void renderJsResourcesRefs(IHeaderResponse response, Collection<JavaScriptResourceReference> resources) {
-        for (JavaScriptResourceReference ref : resources) {
-            if (ref != null)
+    private void renderJsResourcesRefs(IHeaderResponse response, Collection<? extends ResourceReference> resources) {
+        for (ResourceReference ref : resources) {
+            if (ref instanceof JQResourceBundler.BundleResourceReference) {
+                response.renderJavaScriptReference(ref,
+                        ((JQResourceBundler.BundleResourceReference) ref).getParameters(), null);
+                this.renderedResources++;
+            } else if (ref != null) {
                 response.renderJavaScriptReference(ref);
+                this.renderedResources++;
+            }
         }
     }
 
     private void renderCssResourcesUrls(IHeaderResponse response, Collection<CharSequence> resources) {
         for (CharSequence url : resources) {
             response.renderCSSReference(determineResourcesUrl(url));
+            this.renderedResources++;
         }
     }
 
 
-    private void renderCssResourcesRefs(IHeaderResponse response, Collection<CssResourceReference> resources) {
-        for (CssResourceReference ref : resources) {
-            if (ref != null)
+    private void renderCssResourcesRefs(IHeaderResponse response, Collection<? extends ResourceReference> resources) {
+        for (ResourceReference ref : resources) {
+            if (ref instanceof JQResourceBundler.BundleResourceReference) {
+                response.renderCSSReference(ref,
+                        ((JQResourceBundler.BundleResourceReference) ref).getParameters(), null);
+                this.renderedResources++;
+            } else if (ref != null) {
                 response.renderCSSReference(ref);
+                this.renderedResources++;
+            }
         }
     }
 
@@ -183,8 +446,7 @@ public class JQContributionRenderer extends Behavior {
         if (urlString.toLowerCase().startsWith("http://") || urlString.toLowerCase().startsWith("https://"))
             return urlString;
 
-        RequestCycle rc = RequestCycle.get();
-        return rc.getUrlRenderer().renderContextRelativeUrl(urlString);
+        return this.context.getUrlRenderer().renderContextRelativeUrl(urlString);
     }
 
 
@@ -193,11 +455,16 @@ public class JQContributionRenderer extends Behavior {
         if (isEmpty(statements))
             return;
 
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder(estimateLength(statements));
+        // statements are appended raw (untrimmed, without trailing semicolon), so that a statement ending with a line
+        // comment or a newline is still terminated by it
         for (IJQStatement s : statements) {
-            buf.append(s);
+            if (s != null)
+                buf.append(s);
         }
-        response.renderJavaScript(compressJavaScript(buf), UUID.randomUUID().toString());
+        CharSequence script = compressJavaScript(buf);
+        this.renderedScriptBytes += script.length();
+        response.renderJavaScript(script, Utils.scriptId(script));
     }
 
     private void renderJavaScriptInsideDocumentReady(IHeaderResponse response, Collection<IJQStatement> statements) {
@@ -205,30 +472,192 @@ public class JQContributionRenderer extends Behavior {
         if (isEmpty(statements))
             return;
 
-        JQContributionConfig config = JQContributionConfig.get();
+        CharSequence script = this.createDocumentReadyScript(statements);
+        if (script.length() > 0) {
+            this.renderedScriptBytes += script.length();
+            response.renderOnDomReadyJavaScript(script.toString());
+        }
+    }
+
+    /**
+     * Ajax responses evaluate their scripts after the document is ready, so the statements are added to the
+     * {@link JQAjaxScriptCollector} of the request instead of being wrapped into a "documentReady"-script.
+     */
+    private void collectAjaxStatements(AjaxRequestTarget ajaxTarget, Collection<IJQStatement> statements) {
+        JQAjaxScriptCollector collector = JQAjaxScriptCollector.get(ajaxTarget);
+        for (IJQStatement s : statements) {
+            if (s != null)
+                collector.add(s.toString());
+        }
+    }
+
+    /**
+     * Renders the client side loader loading given scripts in parallel and running the "documentReady"-script as soon
+     * as all scripts are loaded. Only the jqwicket "documentReady"-script waits for the loader, see
+     * {@link JQContributionConfig#loadJavascriptAsync()}.
+     */
+    private void renderAsyncLoader(IHeaderResponse response, List<CharSequence> urls,
+                                   Collection<IJQStatement> statements) {
 
-        StringBuffer script = new StringBuffer();
+        if (urls.isEmpty() && isEmpty(statements))
+            return;
+
+        response.renderJavaScript(LOADER_SCRIPT, LOADER_SCRIPT_ID);
+        this.renderedScriptBytes += LOADER_SCRIPT.length();
+
+        StringBuilder script = new StringBuilder("JQWicketLoader.load([");
+        for (int i = 0; i < urls.size(); i++) {
+            if (i > 0)
+                script.append(',');
+            script.append(Utils.dblquote(urls.get(i)));
+        }
+        script.append("],function(){");
+        if (!isEmpty(statements))
+            script.append(this.createDocumentReadyScript(statements));
+        script.append("});");
+
+        this.renderedScriptBytes += script.length();
+        response.renderJavaScript(script, Utils.scriptId(script));
+    }
+
+    private CharSequence createDocumentReadyScript(Collection<IJQStatement> statements) {
+
+        JQContributionConfig config = this.context.getConfig();
+        IJavaScriptCompressor compressor = this.context.getJavaScriptCompressor();
+
+        // render the whole block into one pre-sized buffer
+        StringBuilder script = new StringBuilder(estimateLength(statements) + 64);
         if (Utils.isNotBlank(config.getNonConflictAlias())) {
             script.append("var ").append(config.getNonConflictAlias())
                     .append(" = jQuery.noConflict();\n");
         }
 
-        script.append(compressJavaScript(JQuery.documentReady(statements)));
+        try {
+            if (compressor == null) {
+                JQuery.documentReady(script, statements, false);
+            } else {
+                StringBuilder documentReady = new StringBuilder(estimateLength(statements) + 32);
+                JQuery.documentReady(documentReady, statements, true);
+                script.append(compressJavaScript(compressor, documentReady));
+            }
+        } catch (IOException e) {
+            // never thrown by StringBuilder
+            throw new IllegalStateException(e);
+        }
 
-        if (Utils.isNotBlank(script))
-            response.renderOnDomReadyJavaScript(script.toString());
+        return script;
+    }
+
+    /**
+     * Returns the estimated length of the rendered statements used to pre-size render buffers.
+     */
+    private static int estimateLength(Collection<IJQStatement> statements) {
+        int length = 0;
+        for (IJQStatement s : statements) {
+            if (s != null)
+                length += s.length() + 2;
+        }
+        return length;
     }
 
     private CharSequence compressJavaScript(CharSequence script) {
+        return compressJavaScript(this.context.getJavaScriptCompressor(), script);
+    }
 
-        final IJavaScriptCompressor compressor;
+    static CharSequence compressJavaScript(IJavaScriptCompressor compressor, CharSequence script) {
+        if (compressor == null)
+            return script;
+
+        String original = script.toString();
+        if (Utils.isBlank(original))
+            return script;
+
+        JQRenderContext context = JQRenderContext.get();
+        if (context.getMetrics() == null && context.getTrace() == null)
+            return compressor.compress(original);
+
+        long start = System.nanoTime();
+        String compressed = compressor.compress(original);
+        long nanos = System.nanoTime() - start;
+        if (context.getMetrics() != null)
+            context.getMetrics().recordCompression(nanos, original.length(),
+                    compressed != null ? compressed.length() : 0);
+        if (context.getTrace() != null)
+            context.getTrace().add(JQRequestTrace.Phase.COMPRESS, nanos);
+        return compressed;
+    }
 
-        if (JQContributionConfig.get().isUseYuiJavascriptCompressor())
-            compressor = YuiJavascriptCompressor.get();
-        else
-            compressor = Application.get().getResourceSettings().getJavaScriptCompressor();
+    static IJavaScriptCompressor getJavaScriptCompressor() {
+        return JQRenderContext.get().getJavaScriptCompressor();
+    }
+
+    /**
+     * Widget initializations merged into a single statement, see
+     * {@link #groupWidgetInitializations(JQHeaderContributionTarget, Collection)}.
+     */
+    private static class WidgetGroup {
+
+        private final IJQStatement statement;
+
+        private final String invocation;
+
+        private final int index;
+
+        private final List<String> selectors = new ArrayList<String>(1);
+
+        WidgetGroup(IJQStatement statement, String invocation, int index) {
+            this.statement = statement;
+            this.invocation = invocation;
+            this.index = index;
+        }
+
+        IJQStatement toStatement() {
+            if (this.selectors.size() <= 1)
+                return this.statement;
+
+            StringBuilder selector = new StringBuilder(this.selectors.size() * 8);
+            for (String s : this.selectors) {
+                if (selector.length() > 0)
+                    selector.append(',');
+                selector.append(s);
+            }
+            return JQuery.$(selector).appendRawCharSequence(this.invocation);
+        }
+    }
+
+    /**
+     * Header response collecting the urls of javascript resources instead of rendering them.
+     */
+    private static class ScriptCollectingHeaderResponse extends DecoratingHeaderResponse {
+
+        private final List<CharSequence> urls = new ArrayList<CharSequence>();
+
+        ScriptCollectingHeaderResponse(IHeaderResponse real) {
+            super(real);
+        }
 
-        return (compressor != null && Utils.isNotBlank(script)) ?
-                compressor.compress(String.valueOf(script)) : script;
+        @Override
+        public void renderJavaScriptReference(ResourceReference reference) {
+            CharSequence url = RequestCycle.get().urlFor(reference, null);
+            if (!this.urls.contains(url))
+                this.urls.add(url);
+        }
+
+        @Override
+        public void renderJavaScriptReference(ResourceReference reference, PageParameters pageParameters, String id) {
+            CharSequence url = RequestCycle.get().urlFor(reference, pageParameters);
+            if (!this.urls.contains(url))
+                this.urls.add(url);
+        }
+
+        @Override
+        public void renderJavaScriptReference(String url) {
+            if (!this.urls.contains(url))
+                this.urls.add(url);
+        }
+
+        List<CharSequence> getUrls() {
+            return this.urls;
+        }
     }
 }
@@ -41,9 +41,15 @@ public class JQHeaderContributionTarget implements Serializable {
 
     private Set<CharSequence> cssResourceUrls;
 
-    private Set<IJQStatement> jqStatementsInsideDocumentReady;
+    /**
+     * Statements by their rendered form. Statements are mutable, so they are de-duplicated by the javascript code
+     * they consist of when added rather than by hashing the statements themselves.
+     */
+    private Map<IJQStatement, IJQStatement> jqStatementsInsideDocumentReady;
+
+    private Map<IJQStatement, IJQStatement> jqStatementsOutsideDocumentReady;
 
-    private Set<IJQStatement> jqStatementsOutsideDocumentReady;
+    private Map<IJQStatement, WidgetInvocation> widgetInvocations;
 
     /**
      * Adds collection of javascript resource references to this contribution target.
@@ -214,21 +220,78 @@ public class JQHeaderContributionTarget implements Serializable {
         if (renderInsideDocumentReady) {
 
             if (this.jqStatementsInsideDocumentReady == null)
-                this.jqStatementsInsideDocumentReady = new LinkedHashSet<IJQStatement>();
+                this.jqStatementsInsideDocumentReady = new LinkedHashMap<IJQStatement, IJQStatement>();
 
-            this.jqStatementsInsideDocumentReady.addAll(statements);
+            for (IJQStatement statement : statements) {
+                add(this.jqStatementsInsideDocumentReady, statement);
+            }
 
         } else {
 
             if (this.jqStatementsOutsideDocumentReady == null)
-                this.jqStatementsOutsideDocumentReady = new LinkedHashSet<IJQStatement>();
+                this.jqStatementsOutsideDocumentReady = new LinkedHashMap<IJQStatement, IJQStatement>();
 
-            this.jqStatementsOutsideDocumentReady.addAll(statements);
+            for (IJQStatement statement : statements) {
+                add(this.jqStatementsOutsideDocumentReady, statement);
+            }
         }
 
         return this;
     }
 
+    /**
+     * Adds given statement unless an equal statement (i.e. one consisting of the same javascript code, see
+     * {@link com.google.code.jqwicket.api.JQStatement#equals(Object)}) was already added.
+     *
+     * @return the statement actually contained in the given statements
+     */
+    private static IJQStatement add(Map<IJQStatement, IJQStatement> statements, IJQStatement statement) {
+        IJQStatement added = statements.get(statement);
+        if (added == null && !statements.containsKey(statement)) {
+            statements.put(statement, statement);
+            added = statement;
+        }
+        return added;
+    }
+
+    /**
+     * Adds widget initialization statement (<tt>$("selector").widget({...})</tt>) that will be rendered inside the
+     * "document.ready" block. Unlike plain statements, widget initializations may be grouped with initializations of
+     * other elements sharing the same invocation, see {@link JQContributionConfig#groupWidgetInitializations()}.
+     *
+     * @param statement  is the complete widget initialization statement
+     * @param selector   is the selector of the widget elements
+     * @param invocation is the widget invocation, e.g. <tt>.tipTip({...})</tt>
+     * @return this contribution target
+     */
+    public JQHeaderContributionTarget addJQWidgetStatement(IJQStatement statement, CharSequence selector,
+                                                           CharSequence invocation) {
+
+        if (this.jqStatementsInsideDocumentReady == null)
+            this.jqStatementsInsideDocumentReady = new LinkedHashMap<IJQStatement, IJQStatement>();
+
+        IJQStatement added = add(this.jqStatementsInsideDocumentReady, statement);
+        if (added == null)
+            return this;
+
+        if (this.widgetInvocations == null)
+            this.widgetInvocations = new IdentityHashMap<IJQStatement, WidgetInvocation>();
+
+        this.widgetInvocations.put(added, new WidgetInvocation(selector, invocation));
+        return this;
+    }
+
+    /**
+     * Returns the widget invocation the given statement was added with, see
+     * {@link #addJQWidgetStatement(IJQStatement, CharSequence, CharSequence)}.
+     *
+     * @param statement
+     * @return widget invocation or null, if the statement is no widget initialization
+     */
+    public WidgetInvocation getWidgetInvocation(IJQStatement statement) {
+        return this.widgetInvocations != null ? this.widgetInvocations.get(statement) : null;
+    }
+
     /**
      * Returns true, if at least one resource (url, resource reference, statement..) was added to the contribution
      * target and should be rendered. Otherwise returns false.
@@ -240,8 +303,8 @@ public class JQHeaderContributionTarget implements Serializable {
                 || isNotEmpty(this.jsResourceUrls)
                 || isNotEmpty(this.cssResourceReferences)
                 || isNotEmpty(this.cssResourceUrls)
-                || isNotEmpty(this.jqStatementsInsideDocumentReady)
-                || isNotEmpty(this.jqStatementsOutsideDocumentReady);
+                || (this.jqStatementsInsideDocumentReady != null && !this.jqStatementsInsideDocumentReady.isEmpty())
+                || (this.jqStatementsOutsideDocumentReady != null && !this.jqStatementsOutsideDocumentReady.isEmpty());
     }
 
     /**
@@ -298,7 +361,7 @@ public class JQHeaderContributionTarget implements Serializable {
      */
     public Collection<IJQStatement> getJQStatementsInsideDocumentReady() {
         return this.jqStatementsInsideDocumentReady != null ? Collections
-                .unmodifiableSet(this.jqStatementsInsideDocumentReady)
+                .unmodifiableCollection(this.jqStatementsInsideDocumentReady.values())
                 : Collections.<IJQStatement>emptySet();
     }
 
@@ -311,8 +374,33 @@ public class JQHeaderContributionTarget implements Serializable {
      */
     public Collection<IJQStatement> getJQStatementsOutsideDocumentReady() {
         return this.jqStatementsOutsideDocumentReady != null ? Collections
-                .unmodifiableSet(this.jqStatementsOutsideDocumentReady)
+                .unmodifiableCollection(this.jqStatementsOutsideDocumentReady.values())
                 : Collections.<IJQStatement>emptySet();
     }
 
+    /**
+     * Selector and invocation of a widget initialization statement.
+     */
+    public static final class WidgetInvocation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String selector;
+
+        private final String invocation;
+
+        WidgetInvocation(CharSequence selector, CharSequence invocation) {
+            this.selector = String.valueOf(selector);
+            this.invocation = String.valueOf(invocation);
+        }
+
+        public String getSelector() {
+            return selector;
+        }
+
+        public String getInvocation() {
+            return invocation;
+        }
+    }
+
 }
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-wide registry of jqwicket rendering metrics: render time per widget type, render time, inline script
+ * bytes and resources per page, compression time, ajax script blocks as well as the hit rates of the jqwicket caches.
+ * The metrics are exposed as JMX bean <tt>com.google.code.jqwicket:type=JQMetrics,name=&lt;application name&gt;</tt>
+ * and forwarded to registered {@link IJQMetricsListener}s.
+ * <p/>
+ * Metrics are disabled by default, see {@link JQContributionConfig#enableMetrics()}. All counters are lock-free and
+ * may be updated concurrently by any number of requests.
+ *
+ * @author mkalina
+ */
+public class JQMetrics implements JQMetricsMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JQMetrics.class);
+
+    private static final String OBJECT_NAME_PREFIX = "com.google.code.jqwicket:type=JQMetrics,name=";
+
+    private final JQContributionConfig config;
+
+    private final ConcurrentMap<Class<?>, WidgetStats> widgets = new ConcurrentHashMap<Class<?>, WidgetStats>();
+
+    private final List<IJQMetricsListener> listeners = new CopyOnWriteArrayList<IJQMetricsListener>();
+
+    private final AtomicLong renderedPages = new AtomicLong();
+
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    private final AtomicLong inlineScriptBytes = new AtomicLong();
+
+    private final AtomicLong maxInlineScriptBytes = new AtomicLong();
+
+    private final AtomicLong resources = new AtomicLong();
+
+    private final AtomicLong compressions = new AtomicLong();
+
+    private final AtomicLong compressionNanos = new AtomicLong();
+
+    private final AtomicLong compressionInputBytes = new AtomicLong();
+
+    private final AtomicLong compressionOutputBytes = new AtomicLong();
+
+    private final AtomicLong ajaxScriptBlocks = new AtomicLong();
+
+    private final AtomicLong ajaxStatements = new AtomicLong();
+
+    private volatile ObjectName objectName;
+
+    /**
+     * @param config is the config whose caches are monitored
+     */
+    public JQMetrics(JQContributionConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @return metrics of the current application or <tt>null</tt> if metrics are disabled
+     */
+    public static JQMetrics get() {
+        return JQRenderContext.get().getMetrics();
+    }
+
+    /**
+     * Registers the given listener.
+     *
+     * @param listener
+     * @return this metrics
+     */
+    public JQMetrics addListener(IJQMetricsListener listener) {
+        if (listener != null)
+            this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Unregisters the given listener.
+     *
+     * @param listener
+     * @return this metrics
+     */
+    public JQMetrics removeListener(IJQMetricsListener listener) {
+        this.listeners.remove(listener);
+        return this;
+    }
+
+    public void recordWidgetRender(Class<?> widgetType, long nanos) {
+        WidgetStats stats = this.widgets.get(widgetType);
+        if (stats == null) {
+            WidgetStats newStats = new WidgetStats();
+            stats = this.widgets.putIfAbsent(widgetType, newStats);
+            if (stats == null)
+                stats = newStats;
+        }
+        stats.count.incrementAndGet();
+        stats.nanos.addAndGet(nanos);
+
+        for (IJQMetricsListener l : this.listeners) {
+            l.onWidgetRendered(widgetType, nanos);
+        }
+    }
+
+    public void recordPageRender(long nanos, int inlineScriptBytes, int resources) {
+        this.renderedPages.incrementAndGet();
+        this.renderNanos.addAndGet(nanos);
+        this.inlineScriptBytes.addAndGet(inlineScriptBytes);
+        this.resources.addAndGet(resources);
+
+        long max = this.maxInlineScriptBytes.get();
+        while (inlineScriptBytes > max && !this.maxInlineScriptBytes.compareAndSet(max, inlineScriptBytes)) {
+            max = this.maxInlineScriptBytes.get();
+        }
+
+        for (IJQMetricsListener l : this.listeners) {
+            l.onPageRendered(nanos, inlineScriptBytes, resources);
+        }
+    }
+
+    public void recordCompression(long nanos, int originalLength, int compressedLength) {
+        this.compressions.incrementAndGet();
+        this.compressionNanos.addAndGet(nanos);
+        this.compressionInputBytes.addAndGet(originalLength);
+        this.compressionOutputBytes.addAndGet(compressedLength);
+
+        for (IJQMetricsListener l : this.listeners) {
+            l.onJavaScriptCompressed(nanos, originalLength, compressedLength);
+        }
+    }
+
+    public void recordAjaxScript(int statements, int length) {
+        this.ajaxScriptBlocks.incrementAndGet();
+        this.ajaxStatements.addAndGet(statements);
+
+        for (IJQMetricsListener l : this.listeners) {
+            l.onAjaxScriptRendered(statements, length);
+        }
+    }
+
+    /**
+     * Registers this metrics as JMX bean of the given application. The bean is unregistered as soon as the application
+     * is destroyed. Failures are logged and otherwise ignored, metrics keep being recorded either way.
+     *
+     * @param application
+     */
+    public void register(Application application) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(application.getName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            log.warn("cannot register jqwicket metrics as jmx bean", e);
+            return;
+        }
+
+        // wicket 1.5 notifies destroyed applications through onAfterInitialized, so any notification following the
+        // initialization of the application means it is being destroyed
+        final boolean initializing = RequestCycle.get() == null;
+        application.getApplicationListeners().add(new IApplicationListener() {
+            private boolean initialized = !initializing;
+
+            public void onAfterInitialized(Application application) {
+                if (this.initialized)
+                    unregister();
+                this.initialized = true;
+            }
+
+            public void onBeforeDestroyed(Application application) {
+                unregister();
+            }
+        });
+    }
+
+    /**
+     * Unregisters the JMX bean, if registered.
+     */
+    public void unregister() {
+        ObjectName name = this.objectName;
+        if (name == null)
+            return;
+
+        this.objectName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            log.warn("cannot unregister jqwicket metrics jmx bean", e);
+        }
+    }
+
+    public long getRenderedPages() {
+        return this.renderedPages.get();
+    }
+
+    public long getTotalRenderTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.renderNanos.get());
+    }
+
+    public double getAverageRenderTimeMillis() {
+        return ratio(this.renderNanos.get(), this.renderedPages.get()) / 1000000d;
+    }
+
+    public long getTotalInlineScriptBytes() {
+        return this.inlineScriptBytes.get();
+    }
+
+    public long getMaxInlineScriptBytes() {
+        return this.maxInlineScriptBytes.get();
+    }
+
+    public double getAverageInlineScriptBytes() {
+        return ratio(this.inlineScriptBytes.get(), this.renderedPages.get());
+    }
+
+    public double getAverageResourcesPerPage() {
+        return ratio(this.resources.get(), this.renderedPages.get());
+    }
+
+    public long getCompressions() {
+        return this.compressions.get();
+    }
+
+    public long getTotalCompressionTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.compressionNanos.get());
+    }
+
+    public double getCompressionRatio() {
+        return ratio(this.compressionOutputBytes.get(), this.compressionInputBytes.get());
+    }
+
+    public long getAjaxScriptBlocks() {
+        return this.ajaxScriptBlocks.get();
+    }
+
+    public double getAverageAjaxStatementsPerBlock() {
+        return ratio(this.ajaxStatements.get(), this.ajaxScriptBlocks.get());
+    }
+
+    public double getWidgetScriptCacheHitRate() {
+        JQWidgetScriptCache cache = this.config.getWidgetScriptCache();
+        return cache != null ? hitRate(cache.getHits(), cache.getMisses()) : 0d;
+    }
+
+    public double getCompressorCacheHitRate() {
+        JQCache<?, ?> cache = YuiJavascriptCompressor.get().getCache();
+        return hitRate(cache.getHits(), cache.getMisses());
+    }
+
+    public double getResourceBundlerHitRate() {
+        JQResourceBundler bundler = this.config.getResourceBundler();
+        return hitRate(bundler.getHits(), bundler.getMisses());
+    }
+
+    public String[] getWidgetRenderTimes() {
+        List<String> lines = new ArrayList<String>(this.widgets.size());
+        for (Map.Entry<Class<?>, WidgetStats> e : this.widgets.entrySet()) {
+            long count = e.getValue().count.get();
+            long nanos = e.getValue().nanos.get();
+            lines.add(e.getKey().getName() + ": count=" + count
+                    + ", totalMillis=" + TimeUnit.NANOSECONDS.toMillis(nanos)
+                    + ", averageMicros=" + ratio(nanos, count) / 1000d);
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * @param widgetType
+     * @return number of renders of the given widget type
+     */
+    public long getWidgetRenders(Class<?> widgetType) {
+        WidgetStats stats = this.widgets.get(widgetType);
+        return stats != null ? stats.count.get() : 0;
+    }
+
+    /**
+     * @param widgetType
+     * @return total render time of the given widget type in nanoseconds
+     */
+    public long getWidgetRenderNanos(Class<?> widgetType) {
+        WidgetStats stats = this.widgets.get(widgetType);
+        return stats != null ? stats.nanos.get() : 0;
+    }
+
+    public void reset() {
+        this.widgets.clear();
+        this.renderedPages.set(0);
+        this.renderNanos.set(0);
+        this.inlineScriptBytes.set(0);
+        this.maxInlineScriptBytes.set(0);
+        this.resources.set(0);
+        this.compressions.set(0);
+        this.compressionNanos.set(0);
+        this.compressionInputBytes.set(0);
+        this.compressionOutputBytes.set(0);
+        this.ajaxScriptBlocks.set(0);
+        this.ajaxStatements.set(0);
+    }
+
+    private static double ratio(long value, long count) {
+        return count > 0 ? (double) value / count : 0d;
+    }
+
+    private static double hitRate(long hits, long misses) {
+        return ratio(hits, hits + misses);
+    }
+
+    private static class WidgetStats {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong nanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+/**
+ * JMX management interface of {@link JQMetrics}.
+ *
+ * @author mkalina
+ */
+public interface JQMetricsMBean {
+
+    long getRenderedPages();
+
+    long getTotalRenderTimeMillis();
+
+    double getAverageRenderTimeMillis();
+
+    long getTotalInlineScriptBytes();
+
+    long getMaxInlineScriptBytes();
+
+    double getAverageInlineScriptBytes();
+
+    double getAverageResourcesPerPage();
+
+    long getCompressions();
+
+    long getTotalCompressionTimeMillis();
+
+    double getCompressionRatio();
+
+    long getAjaxScriptBlocks();
+
+    double getAverageAjaxStatementsPerBlock();
+
+    double getWidgetScriptCacheHitRate();
+
+    double getCompressorCacheHitRate();
+
+    double getResourceBundlerHitRate();
+
+    /**
+     * @return one line per widget type: type, number of renders, total and average render time
+     */
+    String[] getWidgetRenderTimes();
+
+    /**
+     * Resets all counters (but not the caches).
+     */
+    void reset();
+
+}
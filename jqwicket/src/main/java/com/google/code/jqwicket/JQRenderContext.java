@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.javascript.IJavaScriptCompressor;
+import org.apache.wicket.request.UrlRenderer;
+import org.apache.wicket.request.cycle.RequestCycle;
+
+/**
+ * Snapshot of everything jqwicket needs while building statements and rendering contributions: the
+ * {@link JQContributionConfig}, the jquery prefix, the javascript compressor and the url renderer. The snapshot is
+ * created once per request cycle, so that builders don't have to look these up again for every statement.
+ *
+ * @author mkalina
+ */
+public final class JQRenderContext {
+
+    private static final CharSequence DEFAULT_JQUERY_PREFIX = "$";
+
+    private static final MetaDataKey<JQRenderContext> KEY = new MetaDataKey<JQRenderContext>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final JQContributionConfig config;
+
+    private final CharSequence jqueryPrefix;
+
+    private final IJavaScriptCompressor javaScriptCompressor;
+
+    private final UrlRenderer urlRenderer;
+
+    private final JQMetrics metrics;
+
+    private final JQRequestTrace trace;
+
+    /**
+     * Number of components inspected in this request, see {@link JQComponentOnBeforeRenderListener}.
+     */
+    private int inspectedComponents;
+
+    /**
+     * Number of inspected components, which contributed in this request.
+     */
+    private int contributingComponents;
+
+    private JQRenderContext(JQContributionConfig config, RequestCycle requestCycle) {
+        this.config = config;
+
+        CharSequence alias = config != null ? config.getNonConflictAlias() : null;
+        this.jqueryPrefix = Utils.isNotBlank(alias) ? alias : DEFAULT_JQUERY_PREFIX;
+
+        if (config != null && config.isUseYuiJavascriptCompressor())
+            this.javaScriptCompressor = YuiJavascriptCompressor.get();
+        else
+            this.javaScriptCompressor = Application.get().getResourceSettings().getJavaScriptCompressor();
+
+        this.urlRenderer = requestCycle != null ? requestCycle.getUrlRenderer() : null;
+        this.metrics = config != null ? config.getMetrics() : null;
+        this.trace = config != null && config.isServerTimingEnabled() && requestCycle != null ?
+                new JQRequestTrace(requestCycle) : null;
+    }
+
+    /**
+     * Returns the render context of the current request cycle. Outside of a request cycle a new (not cached) context
+     * is returned every time.
+     *
+     * @return current render context
+     */
+    public static JQRenderContext get() {
+        RequestCycle rc = RequestCycle.get();
+        if (rc == null)
+            return new JQRenderContext(JQContributionConfig.get(), null);
+
+        JQRenderContext context = rc.getMetaData(KEY);
+        if (context == null) {
+            context = new JQRenderContext(JQContributionConfig.get(), rc);
+            rc.setMetaData(KEY, context);
+        }
+        return context;
+    }
+
+    /**
+     * Drops the render context of the current request cycle (if any), e.g. because the config has changed.
+     */
+    static void reset() {
+        RequestCycle rc = RequestCycle.get();
+        if (rc != null)
+            rc.setMetaData(KEY, null);
+    }
+
+    /**
+     * @return application's jqwicket config, may be null if jqwicket is not configured
+     */
+    public JQContributionConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return jquery prefix, i.e. <tt>$</tt> or the configured no-conflict alias
+     */
+    public CharSequence getJQueryPrefix() {
+        return jqueryPrefix;
+    }
+
+    /**
+     * @return javascript compressor to use, may be null
+     */
+    public IJavaScriptCompressor getJavaScriptCompressor() {
+        return javaScriptCompressor;
+    }
+
+    /**
+     * @return url renderer of the current request, null outside of a request cycle
+     */
+    public UrlRenderer getUrlRenderer() {
+        return urlRenderer;
+    }
+
+    /**
+     * @return metrics to record to, null if metrics are disabled
+     */
+    public JQMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return trace of the current request, null if tracing is disabled or outside of a request cycle
+     */
+    public JQRequestTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Counts a component inspected in this request.
+     *
+     * @return number of components inspected in this request so far
+     */
+    int componentInspected() {
+        return ++this.inspectedComponents;
+    }
+
+    /**
+     * Counts an inspected component, which contributed in this request.
+     */
+    void componentContributed() {
+        this.contributingComponents++;
+    }
+
+    int getInspectedComponents() {
+        return inspectedComponents;
+    }
+
+    int getContributingComponents() {
+        return contributingComponents;
+    }
+
+}
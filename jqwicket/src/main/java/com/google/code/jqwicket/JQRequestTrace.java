@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.AbstractRequestCycleListener;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * Trace of the time jqwicket spends in the render phases of a single request. The trace is written as
+ * <tt>Server-Timing</tt> response header (so it shows up in the browser's developer tools) and logged as a single
+ * debug-level line at the end of the request.
+ * <p/>
+ * Tracing is disabled by default, see {@link JQContributionConfig#enableServerTiming()}. The header is (re)written
+ * whenever jqwicket has rendered its contributions, it is lost if the response was already committed at that time.
+ *
+ * @author mkalina
+ */
+public class JQRequestTrace {
+
+    private static final Logger log = LoggerFactory.getLogger(JQRequestTrace.class);
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    /**
+     * Traced render phases.
+     */
+    public enum Phase {
+
+        COLLECT("jqw-collect", "jqwicket contributor collection"),
+
+        STATEMENTS("jqw-statements", "jqwicket statement building"),
+
+        COMPRESS("jqw-compress", "jqwicket javascript compression"),
+
+        RESOURCES("jqw-resources", "jqwicket resource tags"),
+
+        RENDER("jqw-render", "jqwicket header rendering");
+
+        private final String metricName;
+
+        private final String description;
+
+        private Phase(String metricName, String description) {
+            this.metricName = metricName;
+            this.description = description;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final RequestCycle requestCycle;
+
+    private final long[] nanos = new long[Phase.values().length];
+
+    private final int[] counts = new int[Phase.values().length];
+
+    private WebResponse response;
+
+    JQRequestTrace(RequestCycle requestCycle) {
+        this.requestCycle = requestCycle;
+        this.captureResponse();
+
+        requestCycle.getListeners().add(new AbstractRequestCycleListener() {
+            @Override
+            public void onEndRequest(RequestCycle cycle) {
+                if (log.isDebugEnabled())
+                    log.debug("{}", JQRequestTrace.this);
+            }
+        });
+    }
+
+    /**
+     * @return trace of the current request or <tt>null</tt> if tracing is disabled
+     */
+    public static JQRequestTrace get() {
+        return JQRenderContext.get().getTrace();
+    }
+
+    /**
+     * Adds the given time to the given phase.
+     *
+     * @param phase
+     * @param nanos
+     */
+    public void add(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()] += nanos;
+        this.counts[phase.ordinal()]++;
+    }
+
+    /**
+     * @param phase
+     * @return total time spent in the given phase in nanoseconds
+     */
+    public long getNanos(Phase phase) {
+        return this.nanos[phase.ordinal()];
+    }
+
+    /**
+     * @param phase
+     * @return number of times the given phase was entered
+     */
+    public int getCount(Phase phase) {
+        return this.counts[phase.ordinal()];
+    }
+
+    /**
+     * Remembers the response currently rendered to, which is the one the page is buffered into (if any) while
+     * components are prepared for rendering.
+     */
+    void captureResponse() {
+        Response current = this.requestCycle.getResponse();
+        if (current instanceof WebResponse)
+            this.response = (WebResponse) current;
+    }
+
+    /**
+     * Writes the trace as <tt>Server-Timing</tt> header, replacing the header written before (if any).
+     */
+    void writeHeader() {
+        WebResponse target = this.response;
+        if (target == null && this.requestCycle.getOriginalResponse() instanceof WebResponse)
+            target = (WebResponse) this.requestCycle.getOriginalResponse();
+
+        if (target != null)
+            target.setHeader(SERVER_TIMING_HEADER, this.toServerTiming());
+    }
+
+    /**
+     * @return value of the <tt>Server-Timing</tt> header, e.g.
+     *         <tt>jqw-collect;dur=0.120;desc="jqwicket contributor collection", ...</tt>
+     */
+    public String toServerTiming() {
+        StringBuilder buf = new StringBuilder(256);
+        for (Phase phase : Phase.values()) {
+            if (this.counts[phase.ordinal()] == 0)
+                continue;
+
+            if (buf.length() > 0)
+                buf.append(", ");
+            buf.append(phase.getMetricName()).append(";dur=").append(millis(this.nanos[phase.ordinal()]))
+                    .append(";desc=\"").append(phase.getDescription()).append('"');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @return structured log line, e.g. <tt>jqwicket trace: url=home, collect=0.120ms/12, ...</tt>
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(256).append("jqwicket trace: url=")
+                .append(this.requestCycle.getRequest().getUrl());
+        for (Phase phase : Phase.values()) {
+            buf.append(", ").append(phase.name().toLowerCase(Locale.ENGLISH)).append('=')
+                    .append(millis(this.nanos[phase.ordinal()])).append("ms/").append(this.counts[phase.ordinal()]);
+        }
+        return buf.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f", nanos / 1000000d);
+    }
+}
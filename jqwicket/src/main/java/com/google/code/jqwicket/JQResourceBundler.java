@@ -0,0 +1,610 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.css.ICssCompressor;
+import org.apache.wicket.javascript.IJavaScriptCompressor;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.CssResourceReference;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.string.StringValue;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Application-wide registry of resource bundles. A bundle is a single resource concatenating the content of several
+ * package resources (e.g. all javascript plugins or stylesheets rendered by a page), so the browser loads one file
+ * instead of many.
+ * <p/>
+ * Bundles are built once and served with far-future cache headers. The bundle url lists the bundled resources (so that
+ * any node of a cluster can rebuild an evicted or never seen bundle) as well as the content hash of the bundle (so that
+ * the url changes with the content). The list of resources is signed with a secret of the application, bundles are
+ * only (re)built for lists the application rendered itself, never for lists made up by a client. Only consecutive
+ * package resources are bundled, a bundle never moves a resource across another one.
+ *
+ * @author mkalina
+ * @see JQContributionConfig#bundleJavascript()
+ * @see JQContributionConfig#bundleCss()
+ */
+public class JQResourceBundler {
+
+    private static final Logger log = LoggerFactory.getLogger(JQResourceBundler.class);
+
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Name of the parameter listing the bundled resources as <tt>scope:name</tt>, in order of concatenation.
+     */
+    static final String PARAM_RESOURCES = "r";
+
+    /**
+     * Name of the parameter carrying the content hash of the bundle.
+     */
+    static final String PARAM_VERSION = "v";
+
+    /**
+     * Name of the parameter carrying the signature of the resource list.
+     */
+    static final String PARAM_SIGNATURE = "s";
+
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Maximal number of resources concatenated into a single bundle, longer sequences are split into several bundles
+     * to keep the bundle urls (and the cost of rebuilding a bundle requested by a client) reasonable.
+     */
+    static final int MAX_BUNDLE_SIZE = 32;
+
+    /**
+     * Matches css <tt>url(...)</tt> references, group 2 is the url itself.
+     */
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+
+    private static final BundleType JAVASCRIPT = new BundleType("js", "text/javascript") {
+        @Override
+        ResourceReference newReference(Class<?> scope, String name) {
+            return new JavaScriptResourceReference(scope, name);
+        }
+
+        @Override
+        void append(StringBuilder bundle, ResourceReference ref, String content) {
+            // statements separator guards against scripts not terminated by semicolon or ending with line comment
+            bundle.append(content).append("\n;\n");
+        }
+
+        @Override
+        String compress(String content) {
+            IJavaScriptCompressor compressor = JQContributionRenderer.getJavaScriptCompressor();
+            return compressor != null ? compressor.compress(content) : content;
+        }
+    };
+
+    private static final BundleType CSS = new BundleType("css", "text/css") {
+        @Override
+        ResourceReference newReference(Class<?> scope, String name) {
+            return new CssResourceReference(scope, name);
+        }
+
+        @Override
+        void append(StringBuilder bundle, ResourceReference ref, String content) {
+            bundle.append(rewriteCssUrls(content, ref)).append("\n");
+        }
+
+        @Override
+        String compress(String content) {
+            ICssCompressor compressor = JQRenderContext.get().getConfig().isUseYuiJavascriptCompressor() ?
+                    YuiCssCompressor.get() : Application.get().getResourceSettings().getCssCompressor();
+            return compressor != null ? compressor.compress(content) : content;
+        }
+    };
+
+    /**
+     * Bundles by the bundle type and the list of bundled resource references.
+     */
+    private final JQCache<List<Object>, Bundle> bundles;
+
+    /**
+     * References to render by the bundle type and the list of resource references to bundle.
+     */
+    private final JQCache<List<Object>, List<ResourceReference>> references;
+
+    /**
+     * Key the resource lists of the bundle urls are signed with.
+     */
+    private final SecretKeySpec signatureKey;
+
+    public JQResourceBundler(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize is the maximal number of cached bundles
+     * @param secret  is the secret the bundle urls are signed with, <tt>null</tt> for a random one
+     */
+    public JQResourceBundler(int maxSize, String secret) {
+        this.bundles = new JQCache<List<Object>, Bundle>(maxSize);
+        this.references = new JQCache<List<Object>, List<ResourceReference>>(maxSize);
+
+        byte[] key;
+        if (secret != null) {
+            key = toBytes(secret);
+        } else {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        }
+        this.signatureKey = new SecretKeySpec(key, SIGNATURE_ALGORITHM);
+    }
+
+    /**
+     * Registers the references bundles are served by, so that the application serves bundles even if it never
+     * rendered them (e.g. after a restart or on another cluster node), as long as their urls were signed with the
+     * same secret (see {@link JQContributionConfig#withResourceBundleSecret(String)}).
+     *
+     * @param application is the application to register the references for
+     */
+    public static void registerReferences(Application application) {
+        application.getResourceReferenceRegistry().registerResourceReference(new BundleResourceReference(JAVASCRIPT));
+        application.getResourceReferenceRegistry().registerResourceReference(new BundleResourceReference(CSS));
+    }
+
+    /**
+     * Returns references to bundles concatenating (and compressing) the given javascript resources. Each sequence of
+     * consecutive package resources is replaced by a single bundle, other references are returned untouched, so the
+     * order of the scripts is kept.
+     *
+     * @param refs are javascript resource references to bundle, in order of rendering
+     * @return references to render, in order of rendering
+     */
+    public List<ResourceReference> bundleJavaScript(List<? extends ResourceReference> refs) {
+        return this.bundle(refs, JAVASCRIPT);
+    }
+
+    /**
+     * Returns references to bundles concatenating (and compressing) the given css resources. Relative
+     * <tt>url()</tt>-s are rewritten to resolve against the original resource location. Each sequence of consecutive
+     * package resources is replaced by a single bundle, other references are returned untouched.
+     *
+     * @param refs are css resource references to bundle, in order of rendering
+     * @return references to render, in order of rendering
+     */
+    public List<ResourceReference> bundleCss(List<? extends ResourceReference> refs) {
+        return this.bundle(refs, CSS);
+    }
+
+    private List<ResourceReference> bundle(List<? extends ResourceReference> refs, BundleType type) {
+        List<Object> key = key(type, refs);
+        List<ResourceReference> result = this.references.get(key);
+        if (result != null)
+            return result;
+
+        result = new ArrayList<ResourceReference>(refs.size());
+        List<ResourceReference> bundled = new ArrayList<ResourceReference>(refs.size());
+        for (ResourceReference ref : refs) {
+            if (!type.isBundleable(ref)) {
+                this.addBundle(result, bundled, type);
+                result.add(ref);
+            } else {
+                bundled.add(ref);
+                if (bundled.size() == MAX_BUNDLE_SIZE)
+                    this.addBundle(result, bundled, type);
+            }
+        }
+        this.addBundle(result, bundled, type);
+
+        return this.references.put(key, Collections.unmodifiableList(result));
+    }
+
+    /**
+     * Adds reference to the bundle of given resources to the result and clears the given resources.
+     */
+    private void addBundle(List<ResourceReference> result, List<ResourceReference> bundled, BundleType type) {
+        if (bundled.size() < 2) {
+            // nothing to gain, render the reference as it is
+            result.addAll(bundled);
+        } else {
+            PageParameters parameters = new PageParameters();
+            List<String> resources = new ArrayList<String>(bundled.size());
+            for (ResourceReference ref : bundled) {
+                String resource = ref.getScope().getName() + ":" + ref.getName();
+                parameters.add(PARAM_RESOURCES, resource);
+                resources.add(resource);
+            }
+            parameters.add(PARAM_VERSION, this.getBundle(type, bundled).getHash());
+            parameters.add(PARAM_SIGNATURE, this.sign(type, resources));
+            result.add(new BundleResourceReference(type, parameters));
+        }
+        bundled.clear();
+    }
+
+    private static List<Object> key(BundleType type, List<? extends ResourceReference> refs) {
+        List<Object> key = new ArrayList<Object>(refs.size() + 1);
+        key.add(type.getExtension());
+        key.addAll(refs);
+        return key;
+    }
+
+    /**
+     * Returns the bundle of the given resources, building it if not cached yet.
+     */
+    private Bundle getBundle(BundleType type, List<ResourceReference> refs) {
+        List<Object> key = key(type, refs);
+        Bundle bundle = this.bundles.get(key);
+        if (bundle == null)
+            bundle = this.bundles.put(key, this.createBundle(refs, type));
+        return bundle;
+    }
+
+    /**
+     * Returns the bundle listed by the given bundle url parameters, rebuilding it if necessary. Only resource lists
+     * signed by this application are accepted.
+     *
+     * @param extension  is the extension of the bundle
+     * @param parameters are the parameters of the bundle url
+     * @return the bundle or <tt>null</tt> if the parameters don't list bundleable resources or aren't signed
+     */
+    Bundle getBundle(String extension, PageParameters parameters) {
+        BundleType type = JAVASCRIPT.getExtension().equals(extension) ? JAVASCRIPT :
+                CSS.getExtension().equals(extension) ? CSS : null;
+        List<StringValue> values = parameters.getValues(PARAM_RESOURCES);
+        if (type == null || values.size() < 2 || values.size() > MAX_BUNDLE_SIZE)
+            return null;
+
+        List<String> resources = new ArrayList<String>(values.size());
+        for (StringValue value : values) {
+            resources.add(value.toString(""));
+        }
+        String signature = parameters.get(PARAM_SIGNATURE).toString("");
+        if (!MessageDigest.isEqual(toBytes(signature), toBytes(this.sign(type, resources)))) {
+            log.debug("Refusing bundle of {}, invalid signature", resources);
+            return null;
+        }
+
+        List<ResourceReference> refs = new ArrayList<ResourceReference>(resources.size());
+        for (String resource : resources) {
+            int separator = resource.indexOf(':');
+            Class<?> scope = separator > 0 ? WicketObjects.resolveClass(resource.substring(0, separator)) : null;
+            String name = resource.substring(separator + 1);
+            if (scope == null || !name.endsWith("." + extension)
+                    || !PackageResource.exists(scope, name, null, null, null))
+                return null;
+
+            refs.add(type.newReference(scope, name));
+        }
+        return this.getBundle(type, refs);
+    }
+
+    /**
+     * Signs the given list of bundled resources (<tt>scope:name</tt>) of the given bundle type.
+     *
+     * @return hex encoded signature
+     */
+    private String sign(BundleType type, List<String> resources) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+            mac.init(this.signatureKey);
+            mac.update(toBytes(type.getExtension()));
+            for (String resource : resources) {
+                mac.update((byte) '\n');
+                mac.update(toBytes(resource));
+            }
+            byte[] signature = mac.doFinal();
+            StringBuilder hex = new StringBuilder(signature.length * 2);
+            for (byte b : signature) {
+                hex.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Bundle createBundle(List<ResourceReference> refs, BundleType type) {
+        StringBuilder content = new StringBuilder();
+        Time lastModified = null;
+        for (ResourceReference ref : refs) {
+            IResourceStream stream = ((PackageResource) ref.getResource()).getCacheableResourceStream();
+            if (stream == null)
+                throw new IllegalStateException("Cannot bundle resource " + ref + ", resource not found");
+
+            type.append(content, ref, read(stream));
+            lastModified = latest(lastModified, stream.lastModifiedTime());
+        }
+
+        String compressed;
+        try {
+            compressed = type.compress(content.toString());
+        } catch (RuntimeException e) {
+            log.warn("Error compressing " + type.getExtension() + " bundle! Using uncompressed content", e);
+            compressed = content.toString();
+        }
+
+        return new Bundle(toBytes(compressed), type.getContentType(), lastModified, Utils.contentHash(compressed));
+    }
+
+    public int size() {
+        return this.bundles.size();
+    }
+
+    /**
+     * @return number of bundle lookups served from the cache
+     */
+    public long getHits() {
+        return this.references.getHits();
+    }
+
+    /**
+     * @return number of bundle lookups which had to (re)build the bundle references
+     */
+    public long getMisses() {
+        return this.references.getMisses();
+    }
+
+    public void clear() {
+        this.bundles.clear();
+        this.references.clear();
+    }
+
+    /**
+     * Rewrites relative <tt>url()</tt>-s of the given css, so that they resolve against the location of the original
+     * css resource when served from the bundle location.
+     *
+     * @param css is the content of the css resource
+     * @param ref is the reference to the css resource
+     * @return rewritten css
+     */
+    static String rewriteCssUrls(String css, ResourceReference ref) {
+        String name = ref.getName();
+        // bundles are served from the sibling scope folder, e.g. wicket/resource/<bundler>/bundle.css
+        String base = "../" + ref.getScope().getName() + "/" + name.substring(0, name.lastIndexOf('/') + 1);
+
+        Matcher matcher = CSS_URL.matcher(css);
+        StringBuffer result = new StringBuffer(css.length() + 256);
+        while (matcher.find()) {
+            String url = matcher.group(2).trim();
+            String replacement = isRelativeUrl(url) ? "url(" + matcher.group(1) + base + url + matcher.group(1) + ")"
+                    : matcher.group();
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static boolean isRelativeUrl(String url) {
+        return url.length() > 0 && !url.startsWith("/") && !url.startsWith("#") && url.indexOf(':') < 0;
+    }
+
+    static String read(IResourceStream stream) {
+        try {
+            InputStream in = stream.getInputStream();
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int read;
+                while ((read = in.read(buf)) != -1) {
+                    out.write(buf, 0, read);
+                }
+                return out.toString(ENCODING);
+            } finally {
+                stream.close();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Error reading resource " + stream, e);
+        }
+    }
+
+    static byte[] toBytes(String content) {
+        try {
+            return content.getBytes(ENCODING);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Time latest(Time t1, Time t2) {
+        if (t1 == null)
+            return t2;
+        if (t2 == null)
+            return t1;
+        return t1.after(t2) ? t1 : t2;
+    }
+
+    /**
+     * Type specific bundling (concatenation and compression).
+     */
+    private static abstract class BundleType {
+
+        private final String extension;
+
+        private final String contentType;
+
+        BundleType(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        String getExtension() {
+            return extension;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Only package resources without locale, style and variation can be rebuilt from the bundle url.
+         */
+        boolean isBundleable(ResourceReference ref) {
+            return ref.getLocale() == null && ref.getStyle() == null && ref.getVariation() == null
+                    && ref.getName().endsWith("." + this.extension) && ref.getResource() instanceof PackageResource;
+        }
+
+        abstract ResourceReference newReference(Class<?> scope, String name);
+
+        abstract void append(StringBuilder bundle, ResourceReference ref, String content);
+
+        abstract String compress(String content);
+    }
+
+    /**
+     * Content of a bundle.
+     */
+    public static class Bundle {
+
+        private final byte[] content;
+
+        private final String contentType;
+
+        private final Time lastModified;
+
+        private final String hash;
+
+        public Bundle(byte[] content, String contentType, Time lastModified, String hash) {
+            this.content = content;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * @return hash of the bundle content
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Time getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * Reference to the resource serving the bundles of one type, the bundle itself is selected by the url parameters.
+     */
+    static class BundleResourceReference extends ResourceReference {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String extension;
+
+        private final PageParameters parameters;
+
+        BundleResourceReference(BundleType type) {
+            this(type, null);
+        }
+
+        BundleResourceReference(BundleType type, PageParameters parameters) {
+            super(JQResourceBundler.class, "bundle." + type.getExtension());
+            this.extension = type.getExtension();
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return parameters of the url of the bundle referenced
+         */
+        PageParameters getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public IResource getResource() {
+            return new BundleResource(this.extension);
+        }
+    }
+
+    /**
+     * Serves the bundle listed by the request parameters. Bundles are served with far-future cache headers as long as
+     * the requested version matches the content, the version changes with the content of the bundled resources.
+     */
+    static class BundleResource extends AbstractResource {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String extension;
+
+        BundleResource(String extension) {
+            this.extension = extension;
+        }
+
+        @Override
+        protected ResourceResponse newResourceResponse(Attributes attributes) {
+            ResourceResponse response = new ResourceResponse();
+
+            JQContributionConfig config = JQContributionConfig.get();
+            final Bundle bundle = config != null ?
+                    config.getResourceBundler().getBundle(this.extension, attributes.getParameters()) : null;
+            if (bundle == null) {
+                response.setError(404);
+                return response;
+            }
+
+            response.setContentType(bundle.getContentType());
+            response.setTextEncoding(ENCODING);
+            response.setContentLength(bundle.getContent().length);
+            response.setLastModified(bundle.getLastModified());
+            if (bundle.getHash().equals(attributes.getParameters().get(PARAM_VERSION).toString())) {
+                response.setCacheDurationToMaximum();
+                response.setCacheScope(WebResponse.CacheScope.PUBLIC);
+            } else {
+                // the content changed since the url has been rendered
+                response.disableCaching();
+            }
+
+            if (response.dataNeedsToBeWritten(attributes)) {
+                response.setWriteCallback(new WriteCallback() {
+                    @Override
+                    public void writeData(Attributes attributes) {
+                        attributes.getResponse().write(bundle.getContent());
+                    }
+                });
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import com.google.code.jqwicket.api.IJQOptions;
+
+/**
+ * Application-wide cache of rendered widget invocations, i.e. the <tt>.widgetName({...})</tt> part of the widget
+ * initialization statement. The invocation depends on the widget name and the (json) options only, so components
+ * sharing the same widget configuration render it just once, only the selector is spliced in per component.
+ *
+ * @author mkalina
+ * @see JQContributionConfig#withWidgetScriptCacheSize(int)
+ */
+public class JQWidgetScriptCache {
+
+    private final JQCache<Key, String> cache;
+
+    public JQWidgetScriptCache(int maxSize) {
+        this.cache = new JQCache<Key, String>(maxSize);
+    }
+
+    /**
+     * Returns rendered widget invocation for the given widget name and options.
+     *
+     * @param widgetName is the name of the jquery widget (plugin)
+     * @param options    are widget options
+     * @return widget invocation, e.g. <tt>.datepicker({dateFormat:"dd.mm.yy"})</tt>
+     */
+    public CharSequence getInvocation(CharSequence widgetName, IJQOptions<?> options) {
+        Key key = new Key(String.valueOf(widgetName), options.toString());
+        String invocation = this.cache.get(key);
+        if (invocation == null) {
+            invocation = new StringBuilder(key.name.length() + key.options.length() + 3)
+                    .append('.').append(key.name).append('(').append(key.options).append(')').toString();
+            invocation = this.cache.put(key, invocation);
+        }
+        return invocation;
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.cache.getHits();
+    }
+
+    public long getMisses() {
+        return this.cache.getMisses();
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Cache key consisting of the widget name and the options fingerprint (the json options itself).
+     */
+    private static final class Key {
+
+        private final String name;
+
+        private final String options;
+
+        private final int hashCode;
+
+        Key(String name, String options) {
+            this.name = name;
+            this.options = options;
+            this.hashCode = 31 * name.hashCode() + options.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.name.equals(other.name)
+                    && this.options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -16,13 +16,20 @@
  */
 package com.google.code.jqwicket;
 
+import com.google.code.jqwicket.api.IJQFunction;
+import com.google.code.jqwicket.api.IJQOptions;
+import com.google.code.jqwicket.api.IJQStatement;
 import com.google.code.jqwicket.api.JQLiteral;
 import org.apache.wicket.Application;
 import org.apache.wicket.Component;
 import org.apache.wicket.RuntimeConfigurationType;
 import org.apache.wicket.model.Model;
 
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Map;
 
@@ -35,6 +42,8 @@ import java.util.Map;
  */
 public class Utils {
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     Utils() {
     }
 
@@ -217,7 +226,7 @@ public class Utils {
     }
 
     public static final CharSequence join(int[] objects, String separator) {
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder();
         for (int i = 0; i < objects.length; i++) {
             buf.append(objects[i]);
             if (i < (objects.length - 1))
@@ -227,7 +236,7 @@ public class Utils {
     }
 
     public static final CharSequence join(float[] objects, String separator) {
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder();
         for (int i = 0; i < objects.length; i++) {
             buf.append(objects[i]);
             if (i < (objects.length - 1))
@@ -237,7 +246,7 @@ public class Utils {
     }
 
     public static final CharSequence join(boolean[] objects, String separator) {
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder();
         for (int i = 0; i < objects.length; i++) {
             buf.append(objects[i]);
             if (i < (objects.length - 1))
@@ -252,7 +261,7 @@ public class Utils {
         if (isEmpty(objects))
             return "";
 
-        StringBuffer buf = new StringBuffer();
+        StringBuilder buf = new StringBuilder();
         for (int i = 0; i < objects.length; i++) {
             if (objects[i] != null)
                 buf.append(callback.toCharSequence(objects[i]));
@@ -265,10 +274,112 @@ public class Utils {
 
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
+    /**
+     * Joins the given objects directly into the given {@link Appendable}. Each (non-null) element is rendered via
+     * {@link #render(Appendable, Object)}, so the output is the same as of {@link #join(Object[], String)}.
+     *
+     * @param out       is the target to render to
+     * @param objects   is an array of objects to join
+     * @param separator is a separator
+     * @throws IOException if the target fails to append
+     */
+    public static final <T> void join(Appendable out, T[] objects, CharSequence separator) throws IOException {
+        join(out, objects, separator, new IRenderCallback<T>() {
+            public void render(Appendable out, T obj) throws IOException {
+                Utils.render(out, obj);
+            }
+        });
+    }
+
+    /**
+     * Joins the given objects directly into the given {@link Appendable} using given callback to render each
+     * (non-null) element.
+     *
+     * @param out       is the target to render to
+     * @param objects   is an array of objects to join
+     * @param separator is a separator
+     * @param callback  is a callback rendering single element
+     * @throws IOException if the target fails to append
+     */
+    public static final <T> void join(Appendable out, T[] objects, CharSequence separator,
+                                      IRenderCallback<T> callback) throws IOException {
+
+        if (isEmpty(objects))
+            return;
+
+        for (int i = 0; i < objects.length; i++) {
+            if (objects[i] != null)
+                callback.render(out, objects[i]);
+
+            if (i < (objects.length - 1) && objects[i + 1] != null)
+                out.append(separator);
+        }
+    }
+
+    /**
+     * Renders the given value directly to the given {@link Appendable}. The output is the same as of {@link
+     * String#valueOf(Object)}, but jqwicket statements, functions, options and literals are rendered without building
+     * intermediate strings.
+     *
+     * @param out   is the target to render to
+     * @param value is a value to render
+     * @throws IOException if the target fails to append
+     */
+    public static void render(Appendable out, Object value) throws IOException {
+        if (value instanceof IJQStatement) {
+            ((IJQStatement) value).renderTo(out);
+        } else if (value instanceof IJQFunction) {
+            ((IJQFunction) value).renderTo(out);
+        } else if (value instanceof IJQOptions<?>) {
+            ((IJQOptions<?>) value).renderTo(out);
+        } else if (value instanceof JQLiteral) {
+            ((JQLiteral) value).renderTo(out);
+        } else if (value instanceof String || value instanceof StringBuilder || value instanceof StringBuffer) {
+            out.append((CharSequence) value);
+        } else {
+            // unknown char sequences may compute each char lazily, so render them via toString() once
+            out.append(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Same as {@link #render(Appendable, Object)}, but for {@link StringBuilder} targets that never fail to append.
+     *
+     * @param out   is the target to render to
+     * @param value is a value to render
+     * @return given target
+     */
+    public static StringBuilder append(StringBuilder out, Object value) {
+        try {
+            render(out, value);
+        } catch (IOException e) {
+            // never thrown by StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
     public static CharSequence toJson(Map<CharSequence, ? extends Object> map) {
-        StringBuffer sb = new StringBuffer();
-        sb.append("{");
+        StringBuilder sb = new StringBuilder();
+        try {
+            toJson(sb, map);
+        } catch (IOException e) {
+            // never thrown by StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return JQLiteral._raw(sb);
+    }
+
+    /**
+     * Renders the given map as json object directly to the given {@link Appendable}.
+     *
+     * @param out is the target to render to
+     * @param map is a map to render
+     * @throws IOException if the target fails to append
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static void toJson(Appendable out, Map<CharSequence, ? extends Object> map) throws IOException {
+        out.append("{");
         if (map != null) {
             int count = 0;
             for (Map.Entry<CharSequence, ? extends Object> option : map
@@ -277,31 +388,44 @@ public class Utils {
                 if (value == null)
                     continue;
 
-                CharSequence jsonValue;
-                if (value instanceof Map) {
-                    jsonValue = "[" + toJson((Map) value) + "]";
-                } else if (value instanceof int[]) {
-                    jsonValue = toJson((int[]) value);
-                } else if (value instanceof float[]) {
-                    jsonValue = toJson((float[]) value);
-                } else if (value instanceof boolean[]) {
-                    jsonValue = toJson((boolean[]) value);
-                } else if (value instanceof CharSequence[]) {
-                    jsonValue = toJson((CharSequence[]) value);
-                } else if (value instanceof Object[]) {
-                    jsonValue = toJson((Object[]) value);
-                } else
-                    jsonValue = String.valueOf(value);
-
-                sb.append(option.getKey()).append(":").append(jsonValue);
+                out.append(option.getKey()).append(":");
+                toJsonValue(out, value);
+
                 if (count < (map.size() - 1)) {
-                    sb.append(", ");
+                    out.append(", ");
                 }
                 count++;
             }
         }
-        sb.append("}");
-        return JQLiteral._raw(sb);
+        out.append("}");
+    }
+
+    /**
+     * Renders a single (option) value as json directly to the given {@link Appendable}, the same way
+     * {@link #toJson(Appendable, Map)} renders map values.
+     *
+     * @param out   is the target to render to
+     * @param value is a value to render
+     * @throws IOException if the target fails to append
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static void toJsonValue(Appendable out, Object value) throws IOException {
+        if (value instanceof Map) {
+            out.append("[");
+            toJson(out, (Map) value);
+            out.append("]");
+        } else if (value instanceof int[]) {
+            out.append("[").append(join((int[]) value, ",")).append("]");
+        } else if (value instanceof float[]) {
+            out.append("[").append(join((float[]) value, ",")).append("]");
+        } else if (value instanceof boolean[]) {
+            out.append("[").append(join((boolean[]) value, ",")).append("]");
+        } else if (value instanceof Object[]) {
+            out.append("[");
+            join(out, (Object[]) value, ",");
+            out.append("]");
+        } else
+            render(out, value);
     }
 
     public static CharSequence toJson(int[] args) {
@@ -341,6 +465,79 @@ public class Utils {
                 .append("]");
     }
 
+    /**
+     * Computes the hash of the given content (SHA-1 of its UTF-8 representation).
+     *
+     * @param content
+     * @return hex encoded hash
+     */
+    public static String contentHash(CharSequence content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(String.valueOf(content).getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes a deterministic id of the given script, so that identical scripts are rendered only once per page (see
+     * {@link org.apache.wicket.markup.html.IHeaderResponse#renderJavaScript(CharSequence, String)}) and identical pages
+     * are rendered byte-identical.
+     *
+     * @param script
+     * @return id derived from the content hash of the script
+     */
+    public static String scriptId(CharSequence script) {
+        return "jqwicket-" + contentHash(script);
+    }
+
+    /**
+     * Compares the content of given character sequences regardless of their concrete type.
+     *
+     * @param a
+     * @param b
+     * @return true if both sequences are null or contain the same characters
+     */
+    public static boolean contentEquals(CharSequence a, CharSequence b) {
+        if (a == b)
+            return true;
+
+        if (a == null || b == null || a.length() != b.length())
+            return false;
+
+        for (int i = 0, len = a.length(); i < len; i++) {
+            if (a.charAt(i) != b.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the hash code of the content of the given character sequence, equal to {@link String#hashCode()} of the
+     * same content.
+     *
+     * @param value
+     * @return hash code of the content, 0 for null
+     */
+    public static int contentHashCode(CharSequence value) {
+        if (value == null)
+            return 0;
+
+        int h = 0;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            h = 31 * h + value.charAt(i);
+        }
+        return h;
+    }
+
     @SuppressWarnings("unchecked")
     public static <T> T[] walk(T[] array, IArrayWalkCallback<T> callback) {
 
@@ -366,6 +563,11 @@ public class Utils {
         T onElement(int index, T obj);
     }
 
+    public static interface IRenderCallback<T> {
+
+        void render(Appendable out, T obj) throws IOException;
+    }
+
     // Substring between
     // -----------------------------------------------------------------------
 
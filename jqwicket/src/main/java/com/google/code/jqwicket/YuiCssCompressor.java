@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket;
+
+import com.yahoo.platform.yui.compressor.CssCompressor;
+import org.apache.wicket.css.ICssCompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Yui-compressor based {@link ICssCompressor} implementation. <br/> Note! Add yui-compressor library to your project
+ * to be able to use this compressor.
+ *
+ * @author mkalina
+ */
+public class YuiCssCompressor implements ICssCompressor {
+
+    private static final Logger log = LoggerFactory.getLogger(YuiCssCompressor.class);
+
+    private static final YuiCssCompressor instance = new YuiCssCompressor();
+
+    public static final YuiCssCompressor get() {
+        return instance;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String compress(final String original) {
+
+        if (Utils.isBlank(original))
+            return original;
+
+        try {
+            StringWriter result = new StringWriter();
+            CssCompressor compressor = new CssCompressor(new StringReader(original));
+            compressor.compress(result, -1);
+            result.flush();
+            return result.toString();
+        } catch (IOException e) {
+            log.error("Error compressing css with yui-compressor! Returning original css", e);
+        }
+
+        return original;
+    }
+
+}
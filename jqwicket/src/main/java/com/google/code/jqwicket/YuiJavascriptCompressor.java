@@ -10,8 +10,14 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.concurrent.Semaphore;
 
 /**
+ * Yui-compressor based {@link IJavaScriptCompressor} implementation. Compressed scripts are cached by their content
+ * hash. A yui compressor instance parses the script it is created for and can't be reused, so instead of pooling
+ * compressor instances the number of scripts compressed at the same time is bounded, further compressions wait for a
+ * running one to finish.
+ *
  * @author mkalina
  * @version $Id$
  */
@@ -19,7 +25,17 @@ public class YuiJavascriptCompressor implements IJavaScriptCompressor {
 
     private static final Logger log = LoggerFactory.getLogger(YuiJavascriptCompressor.class);
 
-    private static YuiJavascriptCompressor instance;
+    /**
+     * Default maximal number of cached compressed scripts.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 500;
+
+    /**
+     * Default maximal number of scripts compressed at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_COMPRESSIONS = Runtime.getRuntime().availableProcessors();
+
+    private static final YuiJavascriptCompressor instance = new YuiJavascriptCompressor();
 
     private static final ErrorReporter yuiErrorReporter = new ErrorReporter() {
         public void warning(String s, String s1, int i, String s2, int i1) {
@@ -37,13 +53,47 @@ public class YuiJavascriptCompressor implements IJavaScriptCompressor {
         }
     };
 
-    public static final YuiJavascriptCompressor get() {
-        if (instance == null)
-            instance = new YuiJavascriptCompressor();
+    /**
+     * Compressed scripts keyed by the content hash of the original script.
+     */
+    private final JQCache<String, String> cache;
 
+    private final Semaphore compressions;
+
+    public static final YuiJavascriptCompressor get() {
         return instance;
     }
 
+    public YuiJavascriptCompressor() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize is the maximal number of cached compressed scripts
+     */
+    public YuiJavascriptCompressor(int cacheSize) {
+        this(cacheSize, DEFAULT_MAX_CONCURRENT_COMPRESSIONS);
+    }
+
+    /**
+     * @param cacheSize                 is the maximal number of cached compressed scripts
+     * @param maxConcurrentCompressions is the maximal number of scripts compressed at the same time
+     */
+    public YuiJavascriptCompressor(int cacheSize, int maxConcurrentCompressions) {
+        if (maxConcurrentCompressions <= 0)
+            throw new IllegalArgumentException("maxConcurrentCompressions must be greater than 0");
+
+        this.cache = new JQCache<String, String>(cacheSize);
+        this.compressions = new Semaphore(maxConcurrentCompressions);
+    }
+
+    /**
+     * @return cache of compressed scripts, e.g. to monitor the hit/miss rate
+     */
+    public JQCache<String, String> getCache() {
+        return this.cache;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -52,6 +102,30 @@ public class YuiJavascriptCompressor implements IJavaScriptCompressor {
         if (Utils.isBlank(original))
             return original;
 
+        String key = Utils.contentHash(original);
+        String compressed = this.cache.get(key);
+        if (compressed != null)
+            return compressed;
+
+        try {
+            this.compressions.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the yui-compressor! Returning original javascript");
+            return original;
+        }
+        try {
+            // the script may have been compressed by another request in the meantime
+            compressed = this.cache.peek(key);
+            if (compressed == null)
+                compressed = this.cache.put(key, this.doCompress(original));
+        } finally {
+            this.compressions.release();
+        }
+        return compressed;
+    }
+
+    private String doCompress(final String original) {
         try {
             StringWriter result = new StringWriter();
             JavaScriptCompressor compressor = new JavaScriptCompressor(new StringReader(original), yuiErrorReporter);
@@ -17,26 +17,57 @@
 package com.google.code.jqwicket.api;
 
 import com.google.code.jqwicket.Utils;
+import org.apache.wicket.Application;
 import org.apache.wicket.request.resource.CssResourceReference;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
-
+import org.apache.wicket.request.resource.PackageResource;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.code.jqwicket.Utils.isBlank;
 
 /**
  * Base abstract {@link IJQOptions} implementation. See {@link IJQOptions} for further details.
+ * <p/>
+ * The json representation is computed once and reused until the options (or any nested options) change through
+ * <tt>put</tt>/<tt>removeOption</tt>. Values put into the options are expected not to change afterwards, apart from
+ * nested {@link AbstractJQOptions} which are tracked as well: rendering the json registers the options as parent of
+ * the nested ones, which mark their parents as modified whenever they change themselves.
+ * <p/>
+ * Options can be {@link #freeze() frozen} and shared as a template by many components. Each component then holds
+ * {@link #derive() derived} options containing only its own overrides, so that the template values are stored (and
+ * serialized) only once.
  *
  * @param <T> type of options itself.
  * @author mkalina
  */
 @SuppressWarnings("unchecked")
 public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
-        implements IJQOptions<T> {
+        implements IJQOptions<T>, Cloneable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Global modification counter, every modification of any options instance gets a new (greater) stamp.
+     */
+    private static final AtomicLong MODIFICATIONS = new AtomicLong();
+
+    /**
+     * Minified variants (generated at build time) of javascript resource references.
+     */
+    private static final ConcurrentMap<JavaScriptResourceReference, JavaScriptResourceReference> MINIFIED =
+            new ConcurrentHashMap<JavaScriptResourceReference, JavaScriptResourceReference>();
+
     protected Map<CharSequence, Object> options = new LinkedHashMap<CharSequence, Object>();
 
     private CssResourceReference[] cssResourceReferences;
@@ -51,6 +82,25 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
 
     private CharSequence[] jsResourceUrls;
 
+    private AbstractJQOptions<T> template;
+
+    private boolean frozen;
+
+    private transient long modification;
+
+    /**
+     * Options whose json contains these options, held weakly so that shared nested options don't keep their parents.
+     */
+    private transient List<WeakReference<AbstractJQOptions<?>>> parents;
+
+    private transient long jsonModification;
+
+    private transient String json;
+
+    private transient long jsonValuesModification;
+
+    private transient Map<String, String> jsonValues;
+
     public AbstractJQOptions() {
     }
 
@@ -150,9 +200,46 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * If no minified references were set explicitly, the <tt>.min.js</tt> variants of the
+     * {@link #getJsResourceReferences() javascript resource references} generated at build time are returned.
      */
     public JavaScriptResourceReference[] getJsResourceReferencesMin() {
-        return this.jsResourceReferencesMin;
+        if (this.jsResourceReferencesMin != null || Utils.isEmpty(this.jsResourceReferences))
+            return this.jsResourceReferencesMin;
+
+        JavaScriptResourceReference[] refs = new JavaScriptResourceReference[this.jsResourceReferences.length];
+        boolean minified = false;
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = minified(this.jsResourceReferences[i]);
+            minified |= refs[i] != this.jsResourceReferences[i];
+        }
+        return minified ? refs : null;
+    }
+
+    /**
+     * Returns reference to the minified variant (<tt>name.min.js</tt>) of the given javascript resource if such
+     * resource exists, otherwise the given reference itself.
+     */
+    private static JavaScriptResourceReference minified(JavaScriptResourceReference ref) {
+        if (ref == null || !Application.exists())
+            return ref;
+
+        JavaScriptResourceReference result = MINIFIED.get(ref);
+        if (result == null) {
+            result = ref;
+            String name = ref.getName();
+            if (name.endsWith(".js") && !name.endsWith(".min.js")) {
+                String minName = name.substring(0, name.length() - ".js".length()) + ".min.js";
+                if (PackageResource.exists(ref.getScope(), minName, ref.getLocale(), ref.getStyle(),
+                        ref.getVariation())) {
+                    result = new JavaScriptResourceReference(ref.getScope(), minName, ref.getLocale(),
+                            ref.getStyle(), ref.getVariation());
+                }
+            }
+            MINIFIED.put(ref, result);
+        }
+        return result;
     }
 
     /**
@@ -247,7 +334,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public boolean isEmpty() {
-        return this.options.isEmpty();
+        return this.effectiveOptions().isEmpty();
     }
 
     /**
@@ -261,7 +348,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public CharSequence get(CharSequence key, CharSequence defaultValue) {
-        Object object = options.get(key);
+        Object object = this.value(key);
         return object != null ? object.toString() : defaultValue;
     }
 
@@ -283,14 +370,14 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public Object getObject(CharSequence key) {
-        return options.get(key);
+        return this.value(key);
     }
 
     /**
      * {@inheritDoc}
      */
     public IJQStatement getJQStatement(CharSequence key) {
-        return (IJQStatement) options.get(key);
+        return (IJQStatement) this.value(key);
     }
 
     /**
@@ -304,7 +391,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public int getInt(CharSequence key, int defaultValue) {
-        Object object = this.options.get(key);
+        Object object = this.value(key);
         if (object == null)
             return defaultValue;
 
@@ -315,7 +402,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public AbstractJQOptions<?> getOptions(CharSequence key) {
-        Object object = this.options.get(key);
+        Object object = this.value(key);
         return (AbstractJQOptions<?>) object;
     }
 
@@ -330,7 +417,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public short getShort(CharSequence key, short defaultValue) {
-        Object object = this.options.get(key);
+        Object object = this.value(key);
         if (object == null)
             return defaultValue;
 
@@ -348,7 +435,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public double getDouble(CharSequence key, double defaultValue) {
-        Object object = this.options.get(key);
+        Object object = this.value(key);
         if (object == null)
             return defaultValue;
         return ((Double) object).doubleValue();
@@ -365,7 +452,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public float getFloat(CharSequence key, float defaultValue) {
-        Object object = this.options.get(key);
+        Object object = this.value(key);
         if (object == null)
             return defaultValue;
         return ((Float) object).floatValue();
@@ -375,17 +462,17 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public boolean getBoolean(CharSequence key) {
-        return ((Boolean) this.options.get(key)).booleanValue();
+        return ((Boolean) this.value(key)).booleanValue();
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean getBoolean(CharSequence key, boolean defaultValue) {
-        if (!this.options.containsKey(key))
+        if (!this.containsKey(key))
             return defaultValue;
 
-        return ((Boolean) this.options.get(key)).booleanValue();
+        return ((Boolean) this.value(key)).booleanValue();
     }
 
     /**
@@ -393,6 +480,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence name, IJQStatement value) {
         options.put(name, value);
+        modified();
         return (T) this;
     }
 
@@ -401,6 +489,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence name, IJQFunction value) {
         options.put(name, value);
+        modified();
         return (T) this;
     }
 
@@ -416,6 +505,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
         else
             options.put(key, JQLiteral._(value));
 
+        modified();
         return (T) this;
     }
 
@@ -424,6 +514,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, int value) {
         options.put(key, value);
+        modified();
         return (T) this;
     }
 
@@ -432,6 +523,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, int... values) {
         options.put(key, values);
+        modified();
         return (T) this;
     }
 
@@ -440,6 +532,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, double value) {
         options.put(key, value);
+        modified();
         return (T) this;
     }
 
@@ -448,6 +541,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, double... values) {
         options.put(key, values);
+        modified();
         return (T) this;
     }
 
@@ -456,6 +550,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, float value) {
         options.put(key, value);
+        modified();
         return (T) this;
     }
 
@@ -464,6 +559,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, float... values) {
         options.put(key, values);
+        modified();
         return (T) this;
     }
 
@@ -472,6 +568,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, boolean value) {
         options.put(key, value);
+        modified();
         return (T) this;
     }
 
@@ -480,6 +577,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     public T put(CharSequence key, boolean... values) {
         options.put(key, values);
+        modified();
         return (T) this;
     }
 
@@ -491,6 +589,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
             return (T) this;
 
         options.put(key, values);
+        modified();
         return (T) this;
     }
 
@@ -502,12 +601,14 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
             return (T) this;
 
         options.put(key, Utils.toJson(values));
+        modified();
         return (T) this;
     }
 
     public T put(CharSequence key, Enum<?> e) {
         if (e != null) {
             this.options.put(key, JQLiteral._(e.name()));
+            modified();
         }
         return (T) this;
     }
@@ -516,18 +617,201 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      * {@inheritDoc}
      */
     public void removeOption(CharSequence key) {
-        this.options.remove(key);
+        if (this.template != null && this.template.containsKey(key))
+            this.options.put(key, null); // hides the template value
+        else
+            this.options.remove(key);
+        modified();
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean containsKey(CharSequence key) {
-        return options.containsKey(key);
+        if (this.options.containsKey(key))
+            return this.template == null || this.options.get(key) != null;
+
+        return this.template != null && this.template.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T freeze() {
+        if (this.frozen)
+            return (T) this;
+
+        for (Object value : this.options.values()) {
+            freeze(value);
+        }
+        this.options = Collections.unmodifiableMap(this.options);
+        this.frozen = true;
+        return (T) this;
+    }
+
+    private static void freeze(Object value) {
+        if (value instanceof AbstractJQOptions<?>) {
+            ((AbstractJQOptions<?>) value).freeze();
+        } else if (value instanceof Object[]) {
+            for (Object element : (Object[]) value) {
+                freeze(element);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T derive() {
+        this.freeze();
+        try {
+            AbstractJQOptions<T> derived = (AbstractJQOptions<T>) super.clone();
+            derived.options = new LinkedHashMap<CharSequence, Object>();
+            derived.template = this;
+            derived.frozen = false;
+            derived.parents = null;
+            derived.json = null;
+            derived.jsonValues = null;
+            return (T) derived;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private CharSequence toJson() {
-        return Utils.toJson(this.options);
+    /**
+     * Returns the value of given option, either from these options or from the template.
+     */
+    private Object value(CharSequence key) {
+        if (this.template == null || this.options.containsKey(key))
+            return this.options.get(key);
+
+        return this.template.value(key);
+    }
+
+    /**
+     * Returns all options to be rendered, merging the template options with the overrides of these options.
+     */
+    private Map<CharSequence, Object> effectiveOptions() {
+        if (this.template == null)
+            return this.options;
+
+        Map<CharSequence, Object> result = new LinkedHashMap<CharSequence, Object>(this.template.effectiveOptions());
+        for (Map.Entry<CharSequence, Object> option : this.options.entrySet()) {
+            if (option.getValue() == null)
+                result.remove(option.getKey());
+            else
+                result.put(option.getKey(), option.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Marks the options (and all options containing them) as modified, so that the json representation gets
+     * recomputed on the next access.
+     */
+    protected final void modified() {
+        this.modified(MODIFICATIONS.incrementAndGet());
+    }
+
+    private void modified(long stamp) {
+        if (this.modification >= stamp)
+            return; // already marked, e.g. options nested within themselves
+
+        this.modification = stamp;
+        if (this.parents == null)
+            return;
+
+        for (Iterator<WeakReference<AbstractJQOptions<?>>> it = this.parents.iterator(); it.hasNext(); ) {
+            AbstractJQOptions<?> parent = it.next().get();
+            if (parent == null)
+                it.remove();
+            else
+                parent.modified(stamp);
+        }
+    }
+
+    /**
+     * Registers these options as parent of given nested options (or of options within given array), so that the
+     * nested options mark these as modified when they change. Frozen options never change and are skipped.
+     */
+    private void adopt(Object value) {
+        if (value instanceof AbstractJQOptions<?>) {
+            AbstractJQOptions<?> child = (AbstractJQOptions<?>) value;
+            if (child.frozen || child == this)
+                return;
+
+            if (child.parents == null)
+                child.parents = new ArrayList<WeakReference<AbstractJQOptions<?>>>(1);
+
+            for (Iterator<WeakReference<AbstractJQOptions<?>>> it = child.parents.iterator(); it.hasNext(); ) {
+                AbstractJQOptions<?> parent = it.next().get();
+                if (parent == this)
+                    return;
+                if (parent == null)
+                    it.remove();
+            }
+            child.parents.add(new WeakReference<AbstractJQOptions<?>>(this));
+        } else if (value instanceof Object[]) {
+            for (Object element : (Object[]) value) {
+                adopt(element);
+            }
+        }
+    }
+
+    private String toJson() {
+        if (this.template != null && this.options.isEmpty())
+            return this.template.toJson();
+
+        if (this.json == null || this.jsonModification != this.modification) {
+            Map<CharSequence, Object> effectiveOptions = this.effectiveOptions();
+            for (Object value : effectiveOptions.values()) {
+                adopt(value);
+            }
+            this.json = String.valueOf(Utils.toJson(effectiveOptions));
+            this.jsonModification = this.modification;
+        }
+        return this.json;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void renderTo(Appendable out) throws IOException {
+        out.append(toJson());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, String> toJsonValues() {
+        if (this.jsonValues == null || this.jsonValuesModification != this.modification) {
+            Map<String, String> values = new LinkedHashMap<String, String>();
+            StringBuilder sb = new StringBuilder();
+            try {
+                for (Map.Entry<CharSequence, Object> option : this.effectiveOptions().entrySet()) {
+                    if (option.getValue() == null)
+                        continue;
+
+                    adopt(option.getValue());
+                    sb.setLength(0);
+                    Utils.toJsonValue(sb, option.getValue());
+                    values.put(String.valueOf(option.getKey()), sb.toString());
+                }
+            } catch (IOException e) {
+                // never thrown by StringBuilder
+                throw new IllegalStateException(e);
+            }
+            this.jsonValues = Collections.unmodifiableMap(values);
+            this.jsonValuesModification = this.modification;
+        }
+        return this.jsonValues;
     }
 
     /**
@@ -535,7 +819,7 @@ public abstract class AbstractJQOptions<T extends AbstractJQOptions<T>>
      */
     @Override
     public String toString() {
-        return String.valueOf(toJson());
+        return toJson();
     }
 
     public char charAt(int index) {
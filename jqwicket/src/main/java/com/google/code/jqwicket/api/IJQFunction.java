@@ -16,6 +16,7 @@
  */
 package com.google.code.jqwicket.api;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -61,6 +62,25 @@ public interface IJQFunction extends Serializable, CharSequence {
      */
     String toString(boolean renderFunctionBodyOnly);
 
+    /**
+     * Renders this function directly to the given {@link Appendable}. The output is the same as {@link #toString()},
+     * but no intermediate strings are built.
+     *
+     * @param out is the target to render to
+     * @throws IOException if the target fails to append
+     */
+    void renderTo(Appendable out) throws IOException;
+
+    /**
+     * Renders this function (or its body only) directly to the given {@link Appendable}. The output is the same as
+     * {@link #toString(boolean)}.
+     *
+     * @param out                    is the target to render to
+     * @param renderFunctionBodyOnly
+     * @throws IOException if the target fails to append
+     */
+    void renderTo(Appendable out, boolean renderFunctionBodyOnly) throws IOException;
+
     /**
      * Returns function body only as {@link IJQStatement}.
      *
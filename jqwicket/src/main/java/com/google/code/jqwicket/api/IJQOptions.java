@@ -19,7 +19,9 @@ package com.google.code.jqwicket.api;
 import org.apache.wicket.request.resource.CssResourceReference;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * Interface representing jquery options objects (serialized as json)
@@ -239,4 +241,51 @@ public interface IJQOptions<T extends IJQOptions<?>> extends Serializable,
 
     boolean containsKey(CharSequence key);
 
+    /**
+     * Renders these options as json directly to the given {@link Appendable}. The output is the same as
+     * {@link #toString()}, but no intermediate strings are built.
+     *
+     * @param out is the target to render to
+     * @throws IOException if the target fails to append
+     */
+    void renderTo(Appendable out) throws IOException;
+
+    /**
+     * Returns the json representation of each option value (options with null value are skipped) keyed by the option
+     * name. Used to compute the options changed between two renderings.
+     *
+     * @return unmodifiable map of option names and their json values, in the order of the options
+     */
+    Map<String, String> toJsonValues();
+
+    /**
+     * Freezes these options, so that they can be used as a template shared by many components. Frozen options cannot
+     * be modified anymore, components using them work with {@link #derive() derived} options instead.<br> Example
+     * usage:<br>
+     * <p/>
+     * <pre>
+     * DatePickerOptions template = new DatePickerOptions().dateFormat(&quot;dd.mm.yy&quot;).freeze();
+     * ...
+     * field1.add(new DatePickerBehavior(template));
+     * field2.add(new DatePickerBehavior(template.derive().firstDay(1)));
+     * </pre>
+     *
+     * @return this options instance
+     */
+    T freeze();
+
+    /**
+     * @return <tt>true</tt> if these options are frozen, see {@link #freeze()}
+     */
+    boolean isFrozen();
+
+    /**
+     * Creates new options of the same type backed by these (frozen) options. The new options hold only the values
+     * put/removed afterwards, all other values are read from these options. Options which are not frozen yet get
+     * frozen by this call.
+     *
+     * @return new options instance
+     */
+    T derive();
+
 }
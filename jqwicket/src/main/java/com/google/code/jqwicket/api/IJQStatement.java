@@ -19,6 +19,7 @@ package com.google.code.jqwicket.api;
 import com.google.code.jqwicket.JQBehavior;
 import org.apache.wicket.Component;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -1936,6 +1937,25 @@ public interface IJQStatement extends Serializable, CharSequence {
      */
     String toString(boolean renderWithTrailingSemicolon);
 
+    /**
+     * Renders this {@link IJQStatement} with trailing semicolon directly to the given {@link Appendable}. The output is
+     * the same as {@link #toString()}, but no intermediate strings are built.
+     *
+     * @param out is the target to render to
+     * @throws IOException if the target fails to append
+     */
+    void renderTo(Appendable out) throws IOException;
+
+    /**
+     * Renders this {@link IJQStatement} with or without trailing semicolon directly to the given {@link Appendable}.
+     * The output is the same as {@link #toString(boolean)}, but no intermediate strings are built.
+     *
+     * @param out                         is the target to render to
+     * @param renderWithTrailingSemicolon
+     * @throws IOException if the target fails to append
+     */
+    void renderTo(Appendable out, boolean renderWithTrailingSemicolon) throws IOException;
+
     /**
      * Wraps this {@link IJQStatement} into the {@link JQBehavior}.
      *
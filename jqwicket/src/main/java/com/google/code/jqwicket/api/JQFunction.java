@@ -18,6 +18,7 @@ package com.google.code.jqwicket.api;
 
 import com.google.code.jqwicket.Utils;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import static com.google.code.jqwicket.Utils.isNotEmpty;
@@ -39,25 +40,93 @@ class JQFunction implements IJQFunction, Serializable {
 
 	private CharSequence body;
 
+	private transient int hash;
+
 	JQFunction(CharSequence... bodyStatements) {
-		this.body = (bodyStatements != null ? Utils.join(Utils.walk(
-				bodyStatements, new Utils.IArrayWalkCallback<CharSequence>() {
-					public CharSequence onElement(int index, CharSequence obj) {
-						return semicolon(obj);
-					}
-				}), "\n") : "");
+		this.body = (bodyStatements != null ? renderBody(bodyStatements) : "");
+	}
+
+	/**
+	 * Joins given statements (each terminated with semicolon) into a single
+	 * function body.
+	 */
+	private static CharSequence renderBody(CharSequence[] bodyStatements) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < bodyStatements.length; i++) {
+			if (i > 0)
+				sb.append("\n");
+
+			CharSequence stmt = bodyStatements[i];
+			if (stmt instanceof IJQStatement) {
+				// statements are always rendered with trailing semicolon
+				Utils.append(sb, stmt);
+			} else {
+				Utils.append(sb, semicolon(stmt));
+			}
+		}
+		return sb;
 	}
 
 	public IJQFunction withParams(CharSequence... params) {
 		this.params = params;
+		this.hash = 0;
 		return this;
 	}
 
 	public IJQFunction withName(CharSequence name) {
 		this.name = name;
+		this.hash = 0;
 		return this;
 	}
 
+	/**
+	 * Two functions are equal if they have the same name, parameters and
+	 * body.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+
+		if (!(obj instanceof JQFunction))
+			return false;
+
+		JQFunction other = (JQFunction) obj;
+		if (this.hashCode() != other.hashCode()
+				|| !Utils.contentEquals(this.name, other.name)
+				|| !Utils.contentEquals(this.body, other.body))
+			return false;
+
+		int length = this.params != null ? this.params.length : 0;
+		int otherLength = other.params != null ? other.params.length : 0;
+		if (length != otherLength)
+			return false;
+
+		for (int i = 0; i < length; i++) {
+			if (!Utils.contentEquals(this.params[i], other.params[i]))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = this.hash;
+		if (h == 0) {
+			h = Utils.contentHashCode(this.name);
+			if (this.params != null) {
+				for (CharSequence param : this.params) {
+					h = 31 * h + Utils.contentHashCode(param);
+				}
+			}
+			h = 31 * h + Utils.contentHashCode(this.body);
+			this.hash = h;
+		}
+		return h;
+	}
+
 	public int length() {
 		return this.toString().length();
 	}
@@ -91,19 +160,40 @@ class JQFunction implements IJQFunction, Serializable {
 		if (renderFunctionBodyOnly)
 			return String.valueOf(this.body);
 
-		StringBuffer sb = new StringBuffer();
-		sb.append("function");
+		StringBuilder sb = new StringBuilder(this.body.length() + 32);
+		try {
+			this.renderTo(sb, false);
+		} catch (IOException e) {
+			// never thrown by StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return sb.toString();
+	}
+
+	public void renderTo(Appendable out) throws IOException {
+		this.renderTo(out, false);
+	}
+
+	public void renderTo(Appendable out, boolean renderFunctionBodyOnly)
+			throws IOException {
+		if (renderFunctionBodyOnly) {
+			Utils.render(out, this.body);
+			return;
+		}
+
+		out.append("function");
 
 		if (Utils.isNotBlank(this.name)) {
-			sb.append(" ").append(this.name);
+			out.append(" ").append(this.name);
 		}
 
-		sb.append("(");
+		out.append("(");
 		if (isNotEmpty(params)) {
-			sb.append(Utils.join(params, ","));
+			Utils.join(out, params, ",");
 		}
-		sb.append("){").append(toStringBodyOnly()).append("}");
-		return sb.toString();
+		out.append("){");
+		Utils.render(out, this.body);
+		out.append("}");
 	}
 
 	public IJQStatement toStatement() {
@@ -18,6 +18,7 @@ package com.google.code.jqwicket.api;
 
 import com.google.code.jqwicket.Utils;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -40,11 +41,41 @@ public class JQLiteral implements CharSequence, Serializable {
 
     protected CharSequence buf;
 
+    private transient int hash;
+
     private JQLiteral(CharSequence s, Mode mode) {
         this.buf = s;
         this.mode = mode;
     }
 
+    /**
+     * Two literals are equal if they have the same mode and content.
+     *
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+
+        if (!(obj instanceof JQLiteral))
+            return false;
+
+        JQLiteral other = (JQLiteral) obj;
+        return this.mode == other.mode && this.hashCode() == other.hashCode()
+                && Utils.contentEquals(this.buf, other.buf);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0) {
+            h = 31 * this.mode.hashCode() + Utils.contentHashCode(this.buf);
+            this.hash = h;
+        }
+        return h;
+    }
+
     public int length() {
         return buf.length();
     }
@@ -66,6 +97,16 @@ public class JQLiteral implements CharSequence, Serializable {
         return mode;
     }
 
+    /**
+     * Renders this literal directly to the given {@link Appendable}.
+     *
+     * @param out is the target to render to
+     * @throws IOException if the target fails to append
+     */
+    public void renderTo(Appendable out) throws IOException {
+        out.append(buf);
+    }
+
     /**
      * Builds new literal instance with default mode {@link Mode#DBLQUOTED}.
      *
@@ -137,4 +178,39 @@ public class JQLiteral implements CharSequence, Serializable {
         return new JQLiteral(str, Mode.RAW);
     }
 
+    /**
+     * Renders the literal that {@link #_(Object, Mode)} would build directly to the given {@link Appendable}, without
+     * creating the literal instance itself.
+     *
+     * @param out     is the target to render to
+     * @param literal
+     * @param mode
+     * @throws IOException if the target fails to append
+     */
+    public static final void renderTo(Appendable out, final Object literal, final Mode mode) throws IOException {
+
+        if (literal == null) {
+            out.append("null");
+            return;
+        }
+
+        if (literal instanceof JQLiteral || literal instanceof IJQStatement
+                || literal instanceof IJQFunction || literal instanceof IJQOptions<?>) {
+            Utils.render(out, literal);
+            return;
+        }
+
+        if (mode == Mode.QUOTED) {
+            out.append("'");
+            Utils.render(out, literal);
+            out.append("'");
+        } else if (mode == Mode.DBLQUOTED) {
+            out.append("\"");
+            Utils.render(out, literal);
+            out.append("\"");
+        } else {
+            Utils.render(out, literal);
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ import com.google.code.jqwicket.JQBehavior;
 import com.google.code.jqwicket.Utils;
 import org.apache.wicket.Component;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import static com.google.code.jqwicket.Utils.join;
@@ -34,10 +35,58 @@ class JQStatement implements IJQStatement, Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private StringBuffer buf;
+    /**
+     * Renders chained method arguments the same way {@link JQLiteral#_(Object)} does.
+     */
+    private static final Utils.IRenderCallback<CharSequence> LITERAL_RENDERER = new Utils.IRenderCallback<CharSequence>() {
+        public void render(Appendable out, CharSequence obj) throws IOException {
+            JQLiteral.renderTo(out, obj, JQLiteral.Mode.DBLQUOTED);
+        }
+    };
+
+    private StringBuilder buf;
+
+    /**
+     * Cached hash code, valid as long as the buffer length equals {@link #hashLength} (the buffer is append-only).
+     */
+    private transient int hash;
+
+    private transient int hashLength = -1;
 
     JQStatement() {
-        this.buf = new StringBuffer();
+        this.buf = new StringBuilder();
+    }
+
+    /**
+     * Two statements are equal if they consist of the same javascript code.
+     *
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+
+        if (!(obj instanceof JQStatement))
+            return false;
+
+        JQStatement other = (JQStatement) obj;
+        return this.hashCode() == other.hashCode() && Utils.contentEquals(this.buf, other.buf);
+    }
+
+    /*
+      * (non-Javadoc)
+      *
+      * @see java.lang.Object#hashCode()
+      */
+    @Override
+    public int hashCode() {
+        int length = this.buf.length();
+        if (this.hashLength != length) {
+            this.hash = Utils.contentHashCode(this.buf);
+            this.hashLength = length;
+        }
+        return this.hash;
     }
 
     /*
@@ -83,8 +132,42 @@ class JQStatement implements IJQStatement, Serializable {
      * @see com.google.code.jqwicket.api.IJQStatement#toString(boolean)
      */
     public String toString(boolean renderWithTrailingSemicolon) {
-        return this.buf.toString().trim()
-                + (renderWithTrailingSemicolon ? ";" : "");
+        StringBuilder sb = new StringBuilder(this.buf.length() + 1);
+        try {
+            this.renderTo(sb, renderWithTrailingSemicolon);
+        } catch (IOException e) {
+            // never thrown by StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.google.code.jqwicket.api.IJQStatement#renderTo(Appendable)
+     */
+    public void renderTo(Appendable out) throws IOException {
+        this.renderTo(out, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.google.code.jqwicket.api.IJQStatement#renderTo(Appendable, boolean)
+     */
+    public void renderTo(Appendable out, boolean renderWithTrailingSemicolon) throws IOException {
+        // same as String#trim(), but without copying the buffer
+        int start = 0;
+        int end = this.buf.length();
+        while (start < end && this.buf.charAt(start) <= ' ')
+            start++;
+        while (end > start && this.buf.charAt(end - 1) <= ' ')
+            end--;
+
+        out.append(this.buf, start, end);
+        if (renderWithTrailingSemicolon)
+            out.append(';');
     }
 
     /*
@@ -120,14 +203,12 @@ class JQStatement implements IJQStatement, Serializable {
     public IJQStatement chain(CharSequence methodName,
                               CharSequence... methodArgs) {
         this.buf.append(".").append(methodName).append("(");
-        this.buf.append(join(methodArgs, ",",
-                new Utils.IJoinCallback<CharSequence>() {
-
-                    public CharSequence toCharSequence(CharSequence obj) {
-                        return JQLiteral._(obj);
-                    }
-
-                }));
+        try {
+            join(this.buf, methodArgs, ",", LITERAL_RENDERER);
+        } catch (IOException e) {
+            // never thrown by StringBuilder
+            throw new IllegalStateException(e);
+        }
         this.buf.append(")");
         return this;
     }
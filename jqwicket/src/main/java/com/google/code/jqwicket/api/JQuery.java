@@ -16,11 +16,12 @@
  */
 package com.google.code.jqwicket.api;
 
-import com.google.code.jqwicket.JQContributionConfig;
+import com.google.code.jqwicket.JQRenderContext;
 import com.google.code.jqwicket.Utils;
 import org.apache.wicket.Component;
 import org.apache.wicket.behavior.AbstractAjaxBehavior;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 
@@ -39,14 +40,8 @@ public abstract class JQuery {
 	JQuery() {
 	}
 
-	private static final CharSequence defaultJQueryPrefix = "$";
-
 	private static final CharSequence jqueryPrefix() {
-		if (JQContributionConfig.get() == null)
-			return defaultJQueryPrefix;
-
-		CharSequence alias = JQContributionConfig.get().getNonConflictAlias();
-		return alias != null ? alias : defaultJQueryPrefix;
+		return JQRenderContext.get().getJQueryPrefix();
 	}
 
 	/**
@@ -135,7 +130,7 @@ public abstract class JQuery {
 		if (isEmpty(statements))
 			return null;
 
-		StringBuffer buf = new StringBuffer();
+		StringBuilder buf = new StringBuilder();
 		for (IJQStatement stmt : statements) {
 			buf.append(stmt);
 		}
@@ -166,6 +161,37 @@ public abstract class JQuery {
 		return $document().chain("ready", new JQFunction(statements));
 	}
 
+	/**
+	 * Renders javascript's "document ready" block from the collection of
+	 * {@link IJQStatement}-s directly to the given {@link Appendable}. The
+	 * output is the same as of {@link #documentReady(Collection)}, but neither
+	 * the function body nor the statement itself are built in between.
+	 * 
+	 * @param out
+	 *            is the target to render to
+	 * @param statements
+	 * @param renderWithTrailingSemicolon
+	 *            if the block should be terminated with semicolon, see
+	 *            {@link IJQStatement#renderTo(Appendable, boolean)}
+	 * @throws IOException
+	 *             if the target fails to append
+	 */
+	public static final void documentReady(Appendable out,
+			Collection<IJQStatement> statements,
+			boolean renderWithTrailingSemicolon) throws IOException {
+		out.append(jqueryPrefix()).append("(document).ready(function(){");
+		boolean first = true;
+		for (IJQStatement stmt : statements) {
+			if (!first)
+				out.append("\n");
+			first = false;
+
+			if (stmt != null)
+				stmt.renderTo(out);
+		}
+		out.append(renderWithTrailingSemicolon ? "});" : "})");
+	}
+
 	/**
 	 * Generates javascript function from array of character sequences.
 	 * 
@@ -257,7 +283,7 @@ public abstract class JQuery {
 			Map<String, Object> params, IJQFunction successHandler,
 			IJQFunction failureHandler) {
 
-		StringBuffer buf = new StringBuffer();
+		StringBuilder buf = new StringBuilder();
 		buf.append("wicketAjaxGet('").append(url);
 		if (params != null && !params.isEmpty()) {
 			for (Map.Entry<String, Object> e : params.entrySet()) {
@@ -19,8 +19,6 @@ package com.google.code.jqwicket.ui;
 import com.google.code.jqwicket.JQHeaderContributionTarget;
 import com.google.code.jqwicket.api.IJQOptions;
 
-import static com.google.code.jqwicket.api.JQuery.$;
-
 /**
  * Generic, selector based abstract component behavior for JQuery components.
  * 
@@ -47,8 +45,7 @@ public abstract class GenericJQComponentBehavior<T extends IJQOptions<T>>
 	 */
 	@Override
 	protected void contributeInternal(JQHeaderContributionTarget target) {
-		target.addJQStatements($(this.selector).chain(this.getName(),
-				this.options));
+		this.addWidgetStatement(target, this.selector);
 	}
 
 	/**
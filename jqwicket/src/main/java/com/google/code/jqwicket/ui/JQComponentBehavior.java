@@ -17,12 +17,18 @@
 package com.google.code.jqwicket.ui;
 
 import com.google.code.jqwicket.IJQWidget;
+import com.google.code.jqwicket.JQAjaxScriptCollector;
 import com.google.code.jqwicket.JQBehavior;
+import com.google.code.jqwicket.JQContributionConfig;
 import com.google.code.jqwicket.JQHeaderContributionTarget;
+import com.google.code.jqwicket.JQRenderContext;
+import com.google.code.jqwicket.JQRequestTrace;
+import com.google.code.jqwicket.JQWidgetScriptCache;
 import com.google.code.jqwicket.Utils;
 import com.google.code.jqwicket.api.IJQFunction;
 import com.google.code.jqwicket.api.IJQOptions;
 import com.google.code.jqwicket.api.IJQStatement;
+import com.google.code.jqwicket.api.S;
 import org.apache.wicket.Component;
 import org.apache.wicket.Page;
 import org.apache.wicket.ajax.AjaxRequestTarget;
@@ -44,8 +50,16 @@ public abstract class JQComponentBehavior<T extends IJQOptions<T>> extends
 
     protected T options;
 
+    /**
+     * Json options the memoized {@link #invocation} has been rendered from.
+     */
+    private transient String invocationOptions;
+
+    private transient CharSequence invocation;
+
     public JQComponentBehavior(T options) {
-        this.options = options;
+        // shared (frozen) options templates are never modified, the behavior keeps its own overrides only
+        this.options = options.isFrozen() ? options.derive() : options;
         this.addResourcesFromOptions();
     }
 
@@ -89,8 +103,54 @@ public abstract class JQComponentBehavior<T extends IJQOptions<T>> extends
     @Override
     protected void contributeInternal(JQHeaderContributionTarget target) {
         if (!Page.class.isAssignableFrom(this.component.getClass()))
-            target.addJQStatements($(this.component).chain(this.getName(),
-                    this.options));
+            this.addWidgetStatement(target, S.id(this.component));
+    }
+
+    /**
+     * Adds the widget initialization statement (<tt>$("selector").widgetName({...})</tt>) for the given selector to
+     * the target.
+     *
+     * @param target   is the contribution target
+     * @param selector is the selector of the widget elements
+     */
+    protected void addWidgetStatement(JQHeaderContributionTarget target, CharSequence selector) {
+        CharSequence invocation = this.widgetInvocation();
+        target.addJQWidgetStatement($(selector).appendRawCharSequence(invocation), selector, invocation);
+    }
+
+    /**
+     * Appends the widget invocation (<tt>.widgetName({...})</tt>) to the given statement.
+     *
+     * @param selector is the statement selecting the widget elements
+     * @return given statement
+     */
+    protected IJQStatement widget(IJQStatement selector) {
+        return selector.appendRawCharSequence(this.widgetInvocation());
+    }
+
+    /**
+     * Renders the widget invocation (<tt>.widgetName({...})</tt>). Invocations are taken from the application-wide
+     * {@link JQWidgetScriptCache} if enabled, so that components created anew for every request share the invocation
+     * of their (template) options. The invocation is reused by the behavior as long as the options return the same
+     * (memoized) json instance, i.e. until they are modified.
+     *
+     * @return widget invocation
+     */
+    protected CharSequence widgetInvocation() {
+        String json = String.valueOf(this.options);
+        if (json != this.invocationOptions) {
+            JQContributionConfig config = JQRenderContext.get().getConfig();
+            JQWidgetScriptCache cache = config != null ? config.getWidgetScriptCache() : null;
+            CharSequence name = this.getName();
+            if (cache != null && this.options != null) {
+                this.invocation = cache.getInvocation(name, this.options);
+            } else {
+                this.invocation = new StringBuilder(name.length() + json.length() + 3)
+                        .append('.').append(name).append('(').append(json).append(')').toString();
+            }
+            this.invocationOptions = json;
+        }
+        return this.invocation;
     }
 
     /**
@@ -100,12 +160,25 @@ public abstract class JQComponentBehavior<T extends IJQOptions<T>> extends
     public void beforeRender(Component component) {
         super.beforeRender(component);
 
-        if (AjaxRequestTarget.get() != null) {
+        AjaxRequestTarget ajaxRequestTarget = AjaxRequestTarget.get();
+        if (ajaxRequestTarget != null) {
             JQHeaderContributionTarget ajaxTarget = new JQHeaderContributionTarget();
-            contributeInternal(ajaxTarget);
+            JQRenderContext context = JQRenderContext.get();
+            if (context.getMetrics() == null && context.getTrace() == null) {
+                contributeInternal(ajaxTarget);
+            } else {
+                long start = System.nanoTime();
+                contributeInternal(ajaxTarget);
+                long nanos = System.nanoTime() - start;
+                if (context.getMetrics() != null)
+                    context.getMetrics().recordWidgetRender(this.getClass(), nanos);
+                if (context.getTrace() != null)
+                    context.getTrace().add(JQRequestTrace.Phase.STATEMENTS, nanos);
+            }
+            JQAjaxScriptCollector collector = JQAjaxScriptCollector.get(ajaxRequestTarget);
             for (IJQStatement s : ajaxTarget
                     .getJQStatementsInsideDocumentReady()) {
-                AjaxRequestTarget.get().appendJavaScript(String.valueOf(s));
+                collector.add(String.valueOf(s));
             }
         }
     }
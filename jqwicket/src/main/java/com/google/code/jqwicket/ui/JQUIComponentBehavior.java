@@ -19,8 +19,14 @@ package com.google.code.jqwicket.ui;
 import com.google.code.jqwicket.IJQUIWidget;
 import com.google.code.jqwicket.api.IJQFunction;
 import com.google.code.jqwicket.api.IJQOptions;
+import com.google.code.jqwicket.api.JQLiteral;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 
+import java.util.Map;
+
+import static com.google.code.jqwicket.api.JQuery.$;
+import static com.google.code.jqwicket.api.JQuery.$f;
+
 /**
  * Abstract component behavior for JQuery UI components.
  * 
@@ -33,10 +39,69 @@ public abstract class JQUIComponentBehavior<T extends IJQOptions<T>> extends
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Json values of the options last sent to the client, see
+	 * {@link #update(AjaxRequestTarget)}.
+	 */
+	private transient Map<String, String> sentOptions;
+
 	public JQUIComponentBehavior(T options) {
 		super(options);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected CharSequence widgetInvocation() {
+		this.sentOptions = this.options != null ? this.options.toJsonValues()
+				: null;
+		return super.widgetInvocation();
+	}
+
+	/**
+	 * Brings the client side widget up to date with the current options
+	 * without repainting the component: only options changed since the widget
+	 * was initialized (or last updated) are sent as a single
+	 * <tt>option({...})</tt> call, nothing at all if no option changed. If an
+	 * option was removed or the previously sent options are not known anymore
+	 * (e.g. after the page was deserialized), the widget is re-initialized.
+	 * <br/>
+	 * Note that repainting the component always re-initializes the widget,
+	 * because the repainted element is a new one.
+	 * 
+	 * @param ajaxRequestTarget
+	 */
+	public void update(AjaxRequestTarget ajaxRequestTarget) {
+		if (this.options == null)
+			return;
+
+		Map<String, String> current = this.options.toJsonValues();
+		Map<String, String> sent = this.sentOptions;
+		if (current.equals(sent))
+			return;
+
+		if (sent == null || !current.keySet().containsAll(sent.keySet())) {
+			chain(ajaxRequestTarget, this.destroy());
+			chain(ajaxRequestTarget, $f(this.widget($(this.component))));
+			return;
+		}
+
+		StringBuilder delta = new StringBuilder("{");
+		for (Map.Entry<String, String> option : current.entrySet()) {
+			if (option.getValue().equals(sent.get(option.getKey())))
+				continue;
+
+			if (delta.length() > 1)
+				delta.append(", ");
+			delta.append(option.getKey()).append(':').append(option.getValue());
+		}
+		delta.append('}');
+
+		this.sentOptions = current;
+		chain(ajaxRequestTarget, chain("option", JQLiteral._raw(delta)));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
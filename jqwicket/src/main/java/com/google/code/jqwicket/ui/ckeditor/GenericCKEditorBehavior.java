@@ -1,5 +1,8 @@
 package com.google.code.jqwicket.ui.ckeditor;
 
+import com.google.code.jqwicket.JQHeaderContributionTarget;
+import com.google.code.jqwicket.Utils;
+import com.google.code.jqwicket.api.IJQStatement;
 import com.google.code.jqwicket.ui.GenericJQComponentBehavior;
 import org.apache.wicket.markup.html.IHeaderContributor;
 import org.apache.wicket.markup.html.IHeaderResponse;
@@ -7,7 +10,7 @@ import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.resource.PackageResourceReference;
 import org.apache.wicket.request.resource.ResourceReference;
 
-import java.util.UUID;
+import static com.google.code.jqwicket.api.JQuery.js;
 
 /**
  * Generic, selector based CKEditor behavior.
@@ -41,18 +44,35 @@ public class GenericCKEditorBehavior extends
         return JQ_COMPONENT_NAME;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.google.code.jqwicket.ui.JQComponentBehavior#contributeInternal(com.google.code.jqwicket.JQHeaderContributionTarget)
+     */
+    @Override
+    protected void contributeInternal(JQHeaderContributionTarget target) {
+        super.contributeInternal(target);
+        target.addJQStatements(new IJQStatement[]{js(basePathScript())},
+                false);
+    }
+
     /**
      * {@inheritDoc}
      */
     public void renderHead(IHeaderResponse response) {
+        CharSequence buf = basePathScript();
+        response.renderJavaScript(buf, Utils.scriptId(buf));
+    }
+
+    private static CharSequence basePathScript() {
         CharSequence baseUrl = RequestCycle.get().urlFor(baseRef, null);
         StringBuffer buf = new StringBuffer();
         buf.append(String.format("var CKEDITOR_BASEPATH = '%s';\n", baseUrl));
         buf.append(String
                 .format("function CKEDITOR_GETURL(resource){\n"
                         + " return resource.indexOf('%s') >= 0 ? resource : '%s' + resource;\n"
-                        + "}", baseUrl, baseUrl));
-        response.renderJavaScript(buf, UUID.randomUUID().toString());
+                        + "}\n", baseUrl, baseUrl));
+        return buf;
     }
 
 }
@@ -16,6 +16,12 @@
  */
 package com.google.code.jqwicket.ui.gmap;
 
+import static com.google.code.jqwicket.api.JQuery.$;
+import static com.google.code.jqwicket.api.JQuery.$this;
+
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
 import com.google.code.jqwicket.JQHeaderContributionTarget;
 import com.google.code.jqwicket.ui.JQComponentBehavior;
 
@@ -54,7 +60,58 @@ public class GMapBehavior extends JQComponentBehavior<GMapOptions> implements
 	public void contributeInternal(JQHeaderContributionTarget target) {
 		target.addJavascriptResourceUrls(new StringBuffer(this
 				.getGMapsJavascriptUrl()).append(this.options.getApiKey()));
-		super.contributeInternal(target);
+		if (!this.options.hasMarkerProvider()) {
+			super.contributeInternal(target);
+			return;
+		}
+
+		// each map is initialized separately, the plugin exposes the created
+		// map only through the global $gmap which is overwritten by the next
+		target.addJQStatements($(this.component).appendRawCharSequence(
+				this.markerLoader()));
+	}
+
+	/**
+	 * Renders the client side part of the marker loading: every map is
+	 * initialized on its own and kept as <tt>gmap</tt> data of its element.
+	 * On every <tt>moveend</tt> event the markers of the new viewport are
+	 * requested from the {@link GMapMarkerResource} and replace the
+	 * previously loaded ones. Responses of outdated requests are dropped.
+	 * Cluster markers show their number of markers as title and zoom in on
+	 * click.
+	 */
+	private CharSequence markerLoader() {
+		String jquery = $().toString(false);
+		CharSequence prepend = this.options.get("html_prepend", jquery
+				+ ".fn.gMap.defaults.html_prepend");
+		CharSequence append = this.options.get("html_append", jquery
+				+ ".fn.gMap.defaults.html_append");
+		CharSequence url = RequestCycle.get().urlFor(
+				GMapMarkerResource.REFERENCE,
+				new PageParameters().add(GMapMarkerResource.PARAM_PROVIDER,
+						this.options.getMarkerProvider()));
+
+		StringBuilder js = new StringBuilder(1024);
+		js.append(".each(function(){window.$gmap=null;")
+				.append(this.widget($this()).toString(false))
+				.append(";var m=window.$gmap,u=\"").append(url)
+				.append("\",q=0,o=[];if(!m)return;")
+				.append(jquery).append(".data(this,\"gmap\",m);")
+				.append("function l(){var b=m.getBounds(),sw=b.getSouthWest(),ne=b.getNorthEast(),r=++q;")
+				.append(jquery).append(".ajax({url:u+\"&s=\"+sw.lat()+\"&w=\"+sw.lng()+\"&n=\"+ne.lat()+\"&e=\"+ne.lng()+\"&z=\"+m.getZoom(),")
+				.append("dataType:\"text\",success:function(t){if(r!==q)return;")
+				.append("var k=eval(\"(\"+t+\")\"),i,p,g;")
+				.append("for(i=0;i<o.length;i++)m.removeOverlay(o[i]);o=[];")
+				.append("for(i=0;i<k.length;i++){p=new GLatLng(k[i].latitude,k[i].longitude);")
+				.append("if(k[i].").append(GMapMarkerIndex.COUNT)
+				.append("){g=new GMarker(p,{title:String(k[i].")
+				.append(GMapMarkerIndex.COUNT).append(")});")
+				.append("GEvent.addListener(g,\"click\",(function(p){return function(){m.setCenter(p,m.getZoom()+2);};})(p));")
+				.append("}else{g=new GMarker(p);if(k[i].html)g.bindInfoWindowHtml(")
+				.append(prepend).append("+k[i].html+").append(append)
+				.append(");}m.addOverlay(g);o.push(g);}}});}")
+				.append("GEvent.addListener(m,\"moveend\",l);if(m.isLoaded())l();})");
+		return js;
 	}
 
 	protected CharSequence getGMapsJavascriptUrl() {
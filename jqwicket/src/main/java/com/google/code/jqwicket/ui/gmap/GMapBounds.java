@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.gmap;
+
+import java.io.Serializable;
+
+/**
+ * Rectangular area of the map given by its south-west and north-east corners. If <tt>west</tt> is greater than
+ * <tt>east</tt> the bounds span the 180th meridian.
+ *
+ * @author mkalina
+ */
+public class GMapBounds implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Bounds covering the whole world.
+     */
+    public static final GMapBounds WORLD = new GMapBounds(-90, -180, 90, 180);
+
+    private final double south;
+
+    private final double west;
+
+    private final double north;
+
+    private final double east;
+
+    public GMapBounds(double south, double west, double north, double east) {
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+    }
+
+    public double getSouth() {
+        return south;
+    }
+
+    public double getWest() {
+        return west;
+    }
+
+    public double getNorth() {
+        return north;
+    }
+
+    public double getEast() {
+        return east;
+    }
+
+    /**
+     * @return true if the bounds span the 180th meridian
+     */
+    public boolean isSpanningAntimeridian() {
+        return west > east;
+    }
+
+    /**
+     * @param latitude
+     * @param longitude
+     * @return true if the given point lies inside of the bounds (borders included)
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < south || latitude > north)
+            return false;
+
+        if (this.isSpanningAntimeridian())
+            return longitude >= west || longitude <= east;
+
+        return longitude >= west && longitude <= east;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("[").append(south).append(',').append(west).append("][").append(north).append(',')
+                .append(east).append(']').toString();
+    }
+}
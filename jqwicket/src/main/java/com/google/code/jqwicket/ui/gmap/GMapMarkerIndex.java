@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.gmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory spatial index of markers, answering viewport queries of maps loading their markers from a
+ * {@link IGMapMarkerProvider}. The markers are kept in a uniform grid of <tt>cellSize</tt> degrees, so that a query
+ * only visits the cells overlapping the viewport instead of all markers.
+ * <p/>
+ * Below the cluster zoom level, or if the viewport contains more than <tt>maxMarkers</tt> markers, the markers are
+ * clustered: the viewport is divided into squares of about {@value #CLUSTER_SIZE} pixels (coarser ones if there are
+ * still too many markers) and all markers of a square are replaced by a single marker placed at their centroid,
+ * carrying their number in the <tt>count</tt> option.
+ * <p/>
+ * The index is immutable and therefore thread-safe. It is meant to be built once and shared, e.g. by the application,
+ * and is intentionally not serializable.
+ *
+ * @author mkalina
+ */
+public class GMapMarkerIndex {
+
+    public static final float DEFAULT_CELL_SIZE = 1f;
+
+    public static final int DEFAULT_CLUSTER_ZOOM = 10;
+
+    public static final int DEFAULT_MAX_MARKERS = 200;
+
+    /**
+     * Size of the cluster squares in pixels.
+     */
+    public static final int CLUSTER_SIZE = 64;
+
+    /**
+     * Name of the option carrying the number of markers represented by a cluster marker.
+     */
+    public static final String COUNT = "count";
+
+    private final GMapMarker[] markers;
+
+    private final double[] latitudes;
+
+    private final double[] longitudes;
+
+    /**
+     * Indexes of the markers of each non-empty grid cell, keyed by {@link #cell(int, int)}.
+     */
+    private final Map<Integer, int[]> cells;
+
+    private final double cellSize;
+
+    private final int columns;
+
+    private final int clusterZoom;
+
+    private final int maxMarkers;
+
+    public GMapMarkerIndex(Collection<GMapMarker> markers) {
+        this(markers, DEFAULT_CELL_SIZE, DEFAULT_CLUSTER_ZOOM, DEFAULT_MAX_MARKERS);
+    }
+
+    /**
+     * @param markers     are the markers to index, all of them must define their latitude and longitude
+     * @param cellSize    is the size of the grid cells in degrees
+     * @param clusterZoom is the zoom level below which the markers are clustered
+     * @param maxMarkers  is the number of markers inside of the viewport above which the markers are clustered
+     *                    regardless of the zoom level
+     */
+    public GMapMarkerIndex(Collection<GMapMarker> markers, float cellSize, int clusterZoom, int maxMarkers) {
+        if (cellSize <= 0 || cellSize > 180)
+            throw new IllegalArgumentException("cellSize must be between 0 (exclusive) and 180");
+
+        this.cellSize = cellSize;
+        this.columns = (int) Math.ceil(360 / this.cellSize) + 1;
+        this.clusterZoom = clusterZoom;
+        this.maxMarkers = maxMarkers;
+
+        this.markers = markers.toArray(new GMapMarker[markers.size()]);
+        this.latitudes = new double[this.markers.length];
+        this.longitudes = new double[this.markers.length];
+
+        Map<Integer, List<Integer>> grid = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < this.markers.length; i++) {
+            GMapMarker marker = this.markers[i];
+            Object latitude = marker.getObject("latitude");
+            Object longitude = marker.getObject("longitude");
+            if (!(latitude instanceof Number) || !(longitude instanceof Number))
+                throw new IllegalArgumentException("Marker without latitude and longitude can't be indexed: "
+                        + marker);
+
+            this.latitudes[i] = ((Number) latitude).doubleValue();
+            this.longitudes[i] = ((Number) longitude).doubleValue();
+
+            Integer cell = this.cell(this.row(this.latitudes[i]), this.column(this.longitudes[i]));
+            List<Integer> indexes = grid.get(cell);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                grid.put(cell, indexes);
+            }
+            indexes.add(i);
+        }
+
+        this.cells = new HashMap<Integer, int[]>(grid.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, List<Integer>> e : grid.entrySet()) {
+            int[] indexes = new int[e.getValue().size()];
+            for (int i = 0; i < indexes.length; i++)
+                indexes[i] = e.getValue().get(i);
+            this.cells.put(e.getKey(), indexes);
+        }
+    }
+
+    /**
+     * @return number of indexed markers
+     */
+    public int size() {
+        return this.markers.length;
+    }
+
+    /**
+     * Returns the markers inside of the given bounds, clustered if the zoom level is below the cluster zoom level or if
+     * there are more than <tt>maxMarkers</tt> of them.
+     *
+     * @param bounds is the viewport of the map
+     * @param zoom   is the zoom level of the map
+     * @return markers and cluster markers inside of the given bounds
+     */
+    public List<GMapMarker> query(GMapBounds bounds, int zoom) {
+        int[] hits = this.find(bounds);
+        int count = hits[0];
+        if (count == 0)
+            return Collections.emptyList();
+
+        if (zoom >= this.clusterZoom && count <= this.maxMarkers) {
+            List<GMapMarker> result = new ArrayList<GMapMarker>(count);
+            for (int i = 1; i <= count; i++)
+                result.add(this.markers[hits[i]]);
+            return result;
+        }
+
+        return this.cluster(hits, bounds, zoom);
+    }
+
+    /**
+     * Finds the indexes of the markers inside of the given bounds.
+     *
+     * @return array holding the number of found markers followed by their indexes
+     */
+    private int[] find(GMapBounds bounds) {
+        int fromRow = this.row(bounds.getSouth());
+        int toRow = this.row(bounds.getNorth());
+        int fromColumn = this.column(bounds.getWest());
+        int toColumn = this.column(bounds.getEast());
+        int columnCount = bounds.isSpanningAntimeridian() ? this.columns - fromColumn + toColumn + 1 : toColumn
+                - fromColumn + 1;
+
+        int[] hits = new int[16];
+        if ((long) (toRow - fromRow + 1) * columnCount > this.cells.size()) {
+            // the viewport covers more cells than there are filled ones
+            for (int[] indexes : this.cells.values())
+                hits = this.collect(hits, indexes, bounds);
+            return hits;
+        }
+
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int c = 0; c < columnCount; c++) {
+                int[] indexes = this.cells.get(this.cell(row, (fromColumn + c) % this.columns));
+                if (indexes != null)
+                    hits = this.collect(hits, indexes, bounds);
+            }
+        }
+        return hits;
+    }
+
+    private int[] collect(int[] hits, int[] indexes, GMapBounds bounds) {
+        for (int index : indexes) {
+            if (!bounds.contains(this.latitudes[index], this.longitudes[index]))
+                continue;
+
+            int count = hits[0] + 1;
+            if (count == hits.length) {
+                int[] grown = new int[hits.length * 2];
+                System.arraycopy(hits, 0, grown, 0, hits.length);
+                hits = grown;
+            }
+            hits[count] = index;
+            hits[0] = count;
+        }
+        return hits;
+    }
+
+    private List<GMapMarker> cluster(int[] hits, GMapBounds bounds, int zoom) {
+        // degrees covered by CLUSTER_SIZE pixels, the whole world is 256 pixels wide at zoom level 0
+        double size = 360d * CLUSTER_SIZE / 256 / Math.pow(2, Math.max(0, zoom));
+        if (hits[0] > this.maxMarkers) {
+            // too many markers for the zoom level, coarsen the squares to get about maxMarkers clusters at most
+            double width = bounds.isSpanningAntimeridian() ? 360 - bounds.getWest() + bounds.getEast() : bounds
+                    .getEast() - bounds.getWest();
+            size = Math.max(size, Math.sqrt((bounds.getNorth() - bounds.getSouth()) * width / this.maxMarkers));
+        }
+
+        Map<Long, Cluster> clusters = new LinkedHashMap<Long, Cluster>();
+        for (int i = 1; i <= hits[0]; i++) {
+            int index = hits[i];
+            long key = ((long) Math.floor(this.latitudes[index] / size) << 32)
+                    | ((long) Math.floor(this.longitudes[index] / size) & 0xffffffffL);
+            Cluster cluster = clusters.get(key);
+            if (cluster == null) {
+                cluster = new Cluster(index);
+                clusters.put(key, cluster);
+            } else {
+                cluster.add(index);
+            }
+        }
+
+        List<GMapMarker> result = new ArrayList<GMapMarker>(clusters.size());
+        for (Cluster cluster : clusters.values())
+            result.add(cluster.toMarker());
+        return result;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / this.cellSize);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor((Math.max(-180, Math.min(180, longitude)) + 180) / this.cellSize);
+    }
+
+    private Integer cell(int row, int column) {
+        return row * this.columns + column;
+    }
+
+    private class Cluster {
+
+        private final int first;
+
+        private int count = 1;
+
+        private double latitude;
+
+        private double longitude;
+
+        Cluster(int index) {
+            this.first = index;
+            this.latitude = latitudes[index];
+            this.longitude = longitudes[index];
+        }
+
+        void add(int index) {
+            this.count++;
+            this.latitude += latitudes[index];
+            this.longitude += longitudes[index];
+        }
+
+        GMapMarker toMarker() {
+            if (this.count == 1)
+                return markers[this.first];
+
+            return new GMapMarker().latitude((float) (this.latitude / this.count))
+                    .longitude((float) (this.longitude / this.count)).put(COUNT, this.count);
+        }
+    }
+}
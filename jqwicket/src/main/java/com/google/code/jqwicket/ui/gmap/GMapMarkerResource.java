@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.gmap;
+
+import com.google.code.jqwicket.Utils;
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.IRequestParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared, stateless resource answering the viewport requests of maps loading their markers from a
+ * {@link IGMapMarkerProvider}. Providers are registered once per application under an id, see
+ * {@link #register(Application, String, IGMapMarkerProvider)}, and maps refer to them by that id, see
+ * {@link GMapOptions#markerProvider(CharSequence)}. Rendering such a map therefore keeps the page stateless.
+ * <p/>
+ * The resource is served by {@link #REFERENCE}, which may be mounted to a nicer path, e.g.
+ * <tt>mountResource("/gmap/markers", GMapMarkerResource.REFERENCE)</tt>. Every request carries the provider id
+ * <tt>p</tt> and the whole viewport: <tt>s</tt>, <tt>w</tt>, <tt>n</tt>, <tt>e</tt> and zoom level <tt>z</tt>.
+ */
+public class GMapMarkerResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the parameter carrying the id of the provider.
+     */
+    public static final String PARAM_PROVIDER = "p";
+
+    private static final MetaDataKey<ConcurrentMap<String, IGMapMarkerProvider>> providersKey =
+            new MetaDataKey<ConcurrentMap<String, IGMapMarkerProvider>>() {
+                private static final long serialVersionUID = 1L;
+            };
+
+    /**
+     * Reference to the resource serving the markers of all registered providers.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference(GMapMarkerResource.class, "markers") {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new GMapMarkerResource();
+        }
+    };
+
+    /**
+     * Registers the given provider under the given id. Providers are shared by all sessions, so they have to be
+     * thread-safe, e.g. by querying an immutable {@link GMapMarkerIndex}.
+     *
+     * @param application is the application to register the provider for
+     * @param providerId  is the id maps refer to the provider by
+     * @param provider    is the provider to register
+     */
+    public static void register(Application application, String providerId, IGMapMarkerProvider provider) {
+        if (Utils.isBlank(providerId))
+            throw new IllegalArgumentException("provider id must not be blank");
+        if (provider == null)
+            throw new IllegalArgumentException("provider must not be null");
+        getProviders(application).put(providerId, provider);
+        application.getResourceReferenceRegistry().registerResourceReference(REFERENCE);
+    }
+
+    /**
+     * @param application is the application the provider has been registered for
+     * @param providerId  is the id of the provider
+     * @return provider registered under the given id or <tt>null</tt>
+     */
+    public static IGMapMarkerProvider getProvider(Application application, String providerId) {
+        return providerId == null ? null : getProviders(application).get(providerId);
+    }
+
+    private static ConcurrentMap<String, IGMapMarkerProvider> getProviders(Application application) {
+        synchronized (application) {
+            ConcurrentMap<String, IGMapMarkerProvider> providers = application.getMetaData(providersKey);
+            if (providers == null) {
+                providers = new ConcurrentHashMap<String, IGMapMarkerProvider>();
+                application.setMetaData(providersKey, providers);
+            }
+            return providers;
+        }
+    }
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+
+        IRequestParameters params = attributes.getRequest().getRequestParameters();
+        IGMapMarkerProvider provider = getProvider(Application.get(),
+                params.getParameterValue(PARAM_PROVIDER).toOptionalString());
+        if (provider == null) {
+            response.setError(404);
+            return response;
+        }
+
+        GMapBounds bounds = new GMapBounds(params.getParameterValue("s").toDouble(-90),
+                params.getParameterValue("w").toDouble(-180), params.getParameterValue("n").toDouble(90),
+                params.getParameterValue("e").toDouble(180));
+        int zoom = params.getParameterValue("z").toInt(0);
+
+        List<GMapMarker> markers = provider.getMarkers(bounds, zoom);
+        final CharSequence json = markers == null || markers.isEmpty() ? "[]"
+                : Utils.toJson(markers.toArray(new CharSequence[markers.size()]));
+
+        response.setContentType("application/json");
+        response.setTextEncoding("UTF-8");
+        response.disableCaching();
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) {
+                attributes.getResponse().write(json);
+            }
+        });
+        return response;
+    }
+}
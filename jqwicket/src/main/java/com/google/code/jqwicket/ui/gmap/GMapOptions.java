@@ -86,6 +86,8 @@ public class GMapOptions extends AbstractJQOptions<GMapOptions> {
 
     private CharSequence apiKey;
 
+    private CharSequence markerProvider;
+
     public GMapOptions(CharSequence apiKey) {
         this.apiKey = apiKey;
         this.setJsResourceReferences(JS_RESOURCE);
@@ -96,6 +98,28 @@ public class GMapOptions extends AbstractJQOptions<GMapOptions> {
         return apiKey;
     }
 
+    /**
+     * Loads the markers from the provider registered under the given id instead of rendering them into the page:
+     * whenever the viewport changes, the map requests the markers inside of its bounds at the current zoom level from
+     * the {@link GMapMarkerResource} and replaces the previously loaded ones. Cluster markers zoom in on click.
+     *
+     * @param providerId is the id the provider has been registered under, see
+     *                   {@link GMapMarkerResource#register(org.apache.wicket.Application, String, IGMapMarkerProvider)}
+     * @return
+     */
+    public GMapOptions markerProvider(CharSequence providerId) {
+        this.markerProvider = providerId;
+        return this;
+    }
+
+    public CharSequence getMarkerProvider() {
+        return markerProvider;
+    }
+
+    public boolean hasMarkerProvider() {
+        return markerProvider != null;
+    }
+
     /**
      * Address on which the viewport will be centered.<br> Default: ""
      *
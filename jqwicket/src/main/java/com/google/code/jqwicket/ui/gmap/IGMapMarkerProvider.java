@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.gmap;
+
+import java.util.List;
+
+/**
+ * Provider of the markers loaded by the map for its current viewport, see
+ * {@link GMapOptions#markerProvider(CharSequence)}.
+ * <p/>
+ * Providers are registered once per application, see
+ * {@link GMapMarkerResource#register(org.apache.wicket.Application, String, IGMapMarkerProvider)}, and are shared by
+ * all maps and sessions, so they have to be thread-safe, e.g. by querying an immutable {@link GMapMarkerIndex}.
+ *
+ * @author mkalina
+ */
+public interface IGMapMarkerProvider {
+
+    /**
+     * Returns the markers to show inside of the given bounds. Markers may be cluster markers carrying the number of
+     * markers they stand for in the <tt>count</tt> option, see {@link GMapMarkerIndex#query(GMapBounds, int)}.
+     *
+     * @param bounds is the current viewport of the map
+     * @param zoom   is the current zoom level of the map
+     * @return markers inside of the given bounds
+     */
+    List<GMapMarker> getMarkers(GMapBounds bounds, int zoom);
+
+}
@@ -44,7 +44,6 @@ public class GenericMarkItUpBehavior extends
 			target.addJQStatements($(getSelector()).chain(this.getName(),
 					this.options.getSet().getName()));
 		else
-			target.addJQStatements($(getSelector()).chain(this.getName(),
-					this.options));
+			this.addWidgetStatement(target, getSelector());
 	}
 }
@@ -1,6 +1,7 @@
 package com.google.code.jqwicket.ui.markitup;
 
 import com.google.code.jqwicket.JQHeaderContributionTarget;
+import com.google.code.jqwicket.api.S;
 import com.google.code.jqwicket.ui.JQComponentBehavior;
 import org.apache.wicket.Page;
 
@@ -44,8 +45,7 @@ public class MarkItUpBehavior extends JQComponentBehavior<MarkItUpOptions>
 				target.addJQStatements($(this.component).chain(this.getName(),
 						this.options.getSet().getName()));
 			else
-				target.addJQStatements($(this.component).chain(this.getName(),
-						this.options));
+				this.addWidgetStatement(target, S.id(this.component));
 		}
 	}
 }
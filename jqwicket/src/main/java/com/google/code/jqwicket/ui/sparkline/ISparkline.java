@@ -17,6 +17,7 @@
 package com.google.code.jqwicket.ui.sparkline;
 
 import com.google.code.jqwicket.IJQWidget;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 
 /**
  * Implementation of the jquery <a
@@ -29,4 +30,13 @@ public interface ISparkline extends IJQWidget<SparklineOptions> {
 
 	static final CharSequence JQ_COMPONENT_NAME = "sparkline";
 
+	/**
+	 * Method to redraw the sparkline within the ajax request. In live mode
+	 * only the values added to the ring buffer since the last update are sent
+	 * to the client.
+	 * 
+	 * @param ajaxRequestTarget
+	 */
+	void update(AjaxRequestTarget ajaxRequestTarget);
+
 }
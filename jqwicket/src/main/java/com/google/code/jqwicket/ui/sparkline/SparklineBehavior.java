@@ -16,12 +16,17 @@
  */
 package com.google.code.jqwicket.ui.sparkline;
 
+import com.google.code.jqwicket.JQAjaxScriptCollector;
 import com.google.code.jqwicket.JQHeaderContributionTarget;
 import com.google.code.jqwicket.Utils;
+import com.google.code.jqwicket.api.IJQStatement;
 import com.google.code.jqwicket.api.JQLiteral;
 import com.google.code.jqwicket.ui.JQComponentBehavior;
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 
 import static com.google.code.jqwicket.api.JQuery.$;
+import static com.google.code.jqwicket.api.JQuery.$this;
 
 /**
  * @author mkalina
@@ -32,6 +37,21 @@ public class SparklineBehavior extends JQComponentBehavior<SparklineOptions>
 
 	private static final long serialVersionUID = 1L;
 
+	private static final String LIVE_DATA_KEY = "jqwSparkline";
+
+	/**
+	 * Sequence number of the ring buffer values already sent to the client in
+	 * live mode.
+	 */
+	private long sentSequence = -1;
+
+	/**
+	 * Ring buffer the sent sequence number belongs to, values of any other
+	 * buffer (e.g. looked up again after the page has been restored) are sent
+	 * as a whole.
+	 */
+	private transient SparklineRingBuffer sentBuffer;
+
 	public SparklineBehavior() {
 		this(new SparklineOptions());
 	}
@@ -56,10 +76,90 @@ public class SparklineBehavior extends JQComponentBehavior<SparklineOptions>
 	 */
 	@Override
 	protected void contributeInternal(JQHeaderContributionTarget target) {
-		target.addJQStatements($(this.component).chain(
+		if (this.options.isLive()) {
+			SparklineRingBuffer buffer = this.options.getBuffer();
+			SparklineRingBuffer.Points points = buffer.since(-1);
+			target.addJQStatements(this.livePoints(buffer, points, true));
+			this.sentBuffer = buffer;
+			this.sentSequence = points.getSequence();
+			return;
+		}
+
+		target.addJQStatements(this.sparkline());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see com.google.code.jqwicket.ui.sparkline.ISparkline#update(org.apache.wicket.ajax.AjaxRequestTarget)
+	 */
+	public void update(AjaxRequestTarget ajaxRequestTarget) {
+		if (!this.options.isLive()) {
+			JQAjaxScriptCollector.get(ajaxRequestTarget).add(
+					this.sparkline().toString());
+			return;
+		}
+
+		SparklineRingBuffer buffer = this.options.getBuffer();
+		SparklineRingBuffer.Points points = buffer
+				.since(buffer == this.sentBuffer ? this.sentSequence : -1);
+		if (points.getValues().length == 0 && !points.isReset())
+			return;
+
+		JQAjaxScriptCollector.get(ajaxRequestTarget).add(
+				this.livePoints(buffer, points, false).toString());
+		this.sentBuffer = buffer;
+		this.sentSequence = points.getSequence();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.wicket.behavior.Behavior#detach(org.apache.wicket.Component)
+	 */
+	@Override
+	public void detach(Component component) {
+		super.detach(component);
+		if (this.options.isLive())
+			this.options.getBufferModel().detach();
+	}
+
+	private IJQStatement sparkline() {
+		return $(this.component).chain(
 				this.getName(),
 				this.options.hasValues() ? JQLiteral._raw(Utils
 						.toJson(this.options.getValues())) : "html",
-				this.options));
+				this.options);
+	}
+
+	/**
+	 * Renders the given points into the client side copy of the ring buffer
+	 * (kept as element data) and redraws the sparkline from it. The initial
+	 * render creates the client side buffer, storing the options and the
+	 * buffer capacity along with the values.
+	 */
+	private IJQStatement livePoints(SparklineRingBuffer buffer,
+			SparklineRingBuffer.Points points, boolean init) {
+		CharSequence values = Utils.toJson(points.getValues());
+
+		StringBuilder js = new StringBuilder(values.length() + 256);
+		js.append(".each(function(){var e=").append($this().toString(false));
+		if (init) {
+			js.append(",d={v:").append(values).append(",c:")
+					.append(buffer.getCapacity())
+					.append(",o:").append(this.options).append("};")
+					.append("e.data(\"").append(LIVE_DATA_KEY).append("\",d);");
+		} else {
+			js.append(",d=e.data(\"").append(LIVE_DATA_KEY)
+					.append("\");if(!d)return;");
+			if (points.isReset())
+				js.append("d.v=").append(values).append(';');
+			else
+				js.append("d.v=d.v.concat(").append(values).append(");");
+			js.append("if(d.v.length>d.c)d.v=d.v.slice(d.v.length-d.c);");
+		}
+		js.append("e.").append(this.getName()).append("(d.v,d.o);})");
+
+		return $(this.component).appendRawCharSequence(js);
 	}
 }
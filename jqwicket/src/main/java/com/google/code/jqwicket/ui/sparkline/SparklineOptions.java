@@ -19,6 +19,7 @@ package com.google.code.jqwicket.ui.sparkline;
 import com.google.code.jqwicket.Utils;
 import com.google.code.jqwicket.api.AbstractJQOptions;
 import com.google.code.jqwicket.api.JQLiteral;
+import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
 
 /**
@@ -41,6 +42,8 @@ public class SparklineOptions extends AbstractJQOptions<SparklineOptions> {
 
     private float[] values;
 
+    private IModel<SparklineRingBuffer> buffer;
+
     public SparklineOptions() {
         this(null);
     }
@@ -59,6 +62,38 @@ public class SparklineOptions extends AbstractJQOptions<SparklineOptions> {
         return values != null && values.length > 0;
     }
 
+    /**
+     * Switches the sparkline to live mode: the values are taken from the given ring buffer and each
+     * {@link ISparkline#update(org.apache.wicket.ajax.AjaxRequestTarget) update} sends only the values added since the
+     * previous one, the client keeps its own copy of the buffer.
+     * <p/>
+     * The buffer is shared with the threads adding values, so it is never serialized along with the page. The model
+     * has to look it up instead, e.g. an {@link org.apache.wicket.model.AbstractReadOnlyModel} returning a buffer
+     * kept by the application.
+     *
+     * @param buffer is the model of the ring buffer
+     * @return
+     */
+    public SparklineOptions live(IModel<SparklineRingBuffer> buffer) {
+        this.buffer = buffer;
+        return this;
+    }
+
+    /**
+     * @return the ring buffer of the live mode or <tt>null</tt>
+     */
+    public SparklineRingBuffer getBuffer() {
+        return buffer != null ? buffer.getObject() : null;
+    }
+
+    public IModel<SparklineRingBuffer> getBufferModel() {
+        return buffer;
+    }
+
+    public boolean isLive() {
+        return buffer != null;
+    }
+
     /**
      * line (default), bar, tristate, discrete, bullet, pie or box
      *
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.sparkline;
+
+/**
+ * Fixed-capacity ring buffer of sparkline values used by sparklines in live mode, see
+ * {@link SparklineOptions#live(org.apache.wicket.model.IModel)}. As soon as the buffer is full, every added value replaces the
+ * oldest one. Every added value gets a sequence number, so that only the values added since the last update have to
+ * be sent to the client.
+ * <p/>
+ * The buffer is thread-safe, values may be added by any thread while the sparkline is rendered. It is not
+ * serializable, pages refer to it through a model only.
+ *
+ * @author mkalina
+ */
+public class SparklineRingBuffer {
+
+    private final float[] values;
+
+    /**
+     * Index of the oldest value.
+     */
+    private int start;
+
+    private int size;
+
+    /**
+     * Number of values added so far, i.e. the sequence number of the next value.
+     */
+    private long sequence;
+
+    /**
+     * @param capacity is the maximal number of values kept by the buffer
+     */
+    public SparklineRingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be greater than 0");
+
+        this.values = new float[capacity];
+    }
+
+    /**
+     * Adds the given value, replacing the oldest value if the buffer is full.
+     *
+     * @param value
+     * @return this buffer
+     */
+    public synchronized SparklineRingBuffer add(float value) {
+        int capacity = this.values.length;
+        if (this.size < capacity) {
+            this.values[(this.start + this.size) % capacity] = value;
+            this.size++;
+        } else {
+            this.values[this.start] = value;
+            this.start = (this.start + 1) % capacity;
+        }
+        this.sequence++;
+        return this;
+    }
+
+    /**
+     * Adds the given values in order, see {@link #add(float)}.
+     *
+     * @param values
+     * @return this buffer
+     */
+    public synchronized SparklineRingBuffer addAll(float... values) {
+        if (values != null) {
+            for (float value : values) {
+                this.add(value);
+            }
+        }
+        return this;
+    }
+
+    public int getCapacity() {
+        return this.values.length;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return number of values added so far
+     */
+    public synchronized long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return buffered values, the oldest first
+     */
+    public synchronized float[] toArray() {
+        return this.copy(this.size);
+    }
+
+    /**
+     * Returns the values added after the given sequence number. If the given sequence is unknown (negative, in the
+     * future) or the values added since then don't fit into the buffer anymore, all buffered values are returned as
+     * {@link Points#isReset() reset}.
+     *
+     * @param sequence is the sequence number returned by the previous call or <tt>-1</tt> for all buffered values
+     * @return values added since the given sequence
+     */
+    public synchronized Points since(long sequence) {
+        long missing = this.sequence - sequence;
+        if (sequence < 0 || missing < 0 || missing > this.size)
+            return new Points(this.copy(this.size), this.sequence, true);
+
+        return new Points(this.copy((int) missing), this.sequence, false);
+    }
+
+    /**
+     * @return copy of the given number of the newest values, the oldest first
+     */
+    private float[] copy(int count) {
+        float[] result = new float[count];
+        int capacity = this.values.length;
+        int first = this.start + this.size - count;
+        for (int i = 0; i < count; i++) {
+            result[i] = this.values[(first + i) % capacity];
+        }
+        return result;
+    }
+
+    /**
+     * Values taken from the buffer by {@link SparklineRingBuffer#since(long)}.
+     */
+    public static final class Points {
+
+        private final float[] values;
+
+        private final long sequence;
+
+        private final boolean reset;
+
+        Points(float[] values, long sequence, boolean reset) {
+            this.values = values;
+            this.sequence = sequence;
+            this.reset = reset;
+        }
+
+        /**
+         * @return values, the oldest first
+         */
+        public float[] getValues() {
+            return values;
+        }
+
+        /**
+         * @return sequence number to pass to the next {@link SparklineRingBuffer#since(long)} call
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return true if the values replace all values of the client, false if they are to be appended
+         */
+        public boolean isReset() {
+            return reset;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.sparkline;
+
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.MarkupStream;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.model.IModel;
+
+/**
+ * Sparkline rendered server-side as inline svg (see {@link SparklineSvgRenderer}), requiring no javascript on the
+ * client. The values are taken from the model if given, else from the options (values or live ring buffer).
+ *
+ * @author mkalina
+ */
+public class SparklineSvg extends WebComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final SparklineOptions options;
+
+	public SparklineSvg(String id, SparklineOptions options) {
+		this(id, null, options);
+	}
+
+	public SparklineSvg(String id, IModel<float[]> model,
+			SparklineOptions options) {
+		super(id, model);
+		this.options = options;
+	}
+
+	public SparklineOptions getOptions() {
+		return this.options;
+	}
+
+	/**
+	 * @return values to render
+	 */
+	@SuppressWarnings("unchecked")
+	protected float[] getValues() {
+		IModel<float[]> model = (IModel<float[]>) this.getDefaultModel();
+		if (model != null)
+			return model.getObject();
+
+		if (this.options.isLive())
+			return this.options.getBuffer().toArray();
+
+		return this.options.getValues();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void onDetach() {
+		super.onDetach();
+		if (this.options.isLive())
+			this.options.getBufferModel().detach();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void onComponentTag(ComponentTag tag) {
+		super.onComponentTag(tag);
+		if (tag.isOpenClose())
+			tag.setType(TagType.OPEN);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onComponentTagBody(MarkupStream markupStream,
+			ComponentTag openTag) {
+		this.replaceComponentTagBody(markupStream, openTag,
+				SparklineSvgRenderer.get().render(this.getValues(),
+						this.options));
+	}
+
+}
@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.sparkline;
+
+import com.google.code.jqwicket.JQCache;
+import com.google.code.jqwicket.Utils;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * Renders line, bar and pie sparklines server-side as inline SVG, so that the client needs neither the sparkline
+ * plugin nor any javascript at all. The rendering follows the {@link SparklineOptions} of the jquery plugin: type,
+ * width/height (in pixels), line/fill/spot colors, spot radius, line width, chart range (incl. clipping), normal
+ * range, bar colors/width/spacing as well as pie slice colors and offset. Other chart types are not supported.
+ * <p/>
+ * Rendered charts are cached by the content hash of their values and options.
+ *
+ * @author mkalina
+ */
+public class SparklineSvgRenderer {
+
+    /**
+     * Default maximal number of cached charts.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static final SparklineSvgRenderer instance = new SparklineSvgRenderer();
+
+    private static final String[] DEFAULT_SLICE_COLORS = {"#f00", "#0f0", "#00f", "#ff0", "#0ff", "#f0f", "#888"};
+
+    private static final int DEFAULT_HEIGHT = 16;
+
+    private final JQCache<String, String> cache;
+
+    public static SparklineSvgRenderer get() {
+        return instance;
+    }
+
+    public SparklineSvgRenderer() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize is the maximal number of cached charts
+     */
+    public SparklineSvgRenderer(int cacheSize) {
+        this.cache = new JQCache<String, String>(cacheSize);
+    }
+
+    /**
+     * @return cache of rendered charts, e.g. to monitor the hit/miss rate
+     */
+    public JQCache<String, String> getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Renders the given values as svg chart.
+     *
+     * @param values  are the chart values
+     * @param options are the sparkline options, the type defaults to line
+     * @return svg markup
+     * @throws IllegalArgumentException if the chart type is not supported
+     */
+    public String render(float[] values, SparklineOptions options) {
+        String key = Utils.contentHash(new StringBuilder().append(options).append(Utils.toJson(values)));
+        String svg = this.cache.get(key);
+        if (svg == null)
+            svg = this.cache.put(key, this.renderUncached(values != null ? values : new float[0], options));
+        return svg;
+    }
+
+    private String renderUncached(float[] values, SparklineOptions options) {
+        String type = string(options, "type", "line");
+        if ("line".equals(type))
+            return this.renderLine(values, options);
+        if ("bar".equals(type))
+            return this.renderBar(values, options);
+        if ("pie".equals(type))
+            return this.renderPie(values, options);
+
+        throw new IllegalArgumentException("sparkline type " + type + " cannot be rendered as svg");
+    }
+
+    private String renderLine(float[] values, SparklineOptions options) {
+        int n = values.length;
+        int width = pixels(options, "width", Math.max(n, 2) * number(options, "defaultPixelsPerValue", 3).intValue());
+        int height = pixels(options, "height", DEFAULT_HEIGHT);
+        String lineColor = color(options, "lineColor", "#00f");
+        String fillColor = color(options, "fillColor", "#cdf");
+        float lineWidth = number(options, "lineWidth", 1).floatValue();
+        float spotRadius = number(options, "spotRadius", 1.5f).floatValue();
+
+        Range range = new Range(values, options);
+        if (options.containsKey("normalRangeMin") && options.containsKey("normalRangeMax")) {
+            range.include(number(options, "normalRangeMin", 0).floatValue());
+            range.include(number(options, "normalRangeMax", 0).floatValue());
+        }
+
+        float pad = Math.max(spotRadius, lineWidth / 2);
+        Scale scale = new Scale(range, n, pad, width - pad, height - pad, pad);
+
+        StringBuilder svg = open(width, height);
+        if (options.containsKey("normalRangeMin") && options.containsKey("normalRangeMax")) {
+            float top = scale.y(number(options, "normalRangeMax", 0).floatValue());
+            float bottom = scale.y(number(options, "normalRangeMin", 0).floatValue());
+            svg.append("<rect x=\"0\" y=\"");
+            appendNumber(svg, top);
+            svg.append("\" width=\"").append(width).append("\" height=\"");
+            appendNumber(svg, bottom - top);
+            svg.append("\" fill=\"").append(color(options, "normalRangeColor", "#ccc")).append("\"/>");
+        }
+
+        if (n > 0) {
+            StringBuilder points = new StringBuilder(n * 12);
+            for (int i = 0; i < n; i++) {
+                if (i > 0)
+                    points.append(' ');
+                appendNumber(points, scale.x(i));
+                points.append(',');
+                appendNumber(points, scale.y(range.clip(values[i])));
+            }
+
+            if (fillColor != null) {
+                svg.append("<polygon points=\"");
+                appendNumber(svg, scale.x(0));
+                svg.append(',');
+                appendNumber(svg, height);
+                svg.append(' ').append(points).append(' ');
+                appendNumber(svg, scale.x(n - 1));
+                svg.append(',');
+                appendNumber(svg, height);
+                svg.append("\" fill=\"").append(fillColor).append("\" stroke=\"none\"/>");
+            }
+
+            svg.append("<polyline points=\"").append(points).append("\" fill=\"none\" stroke=\"").append(lineColor)
+                    .append("\" stroke-width=\"");
+            appendNumber(svg, lineWidth);
+            svg.append("\"/>");
+
+            int min = 0, max = 0;
+            for (int i = 1; i < n; i++) {
+                if (values[i] < values[min])
+                    min = i;
+                if (values[i] > values[max])
+                    max = i;
+            }
+            this.spot(svg, scale, range, values, min, color(options, "minSpotColor", "#f80"), spotRadius);
+            this.spot(svg, scale, range, values, max, color(options, "maxSpotColor", "#f80"), spotRadius);
+            this.spot(svg, scale, range, values, n - 1, color(options, "spotColor", "#f80"), spotRadius);
+        }
+
+        return svg.append("</svg>").toString();
+    }
+
+    private void spot(StringBuilder svg, Scale scale, Range range, float[] values, int index, String color,
+                      float radius) {
+        if (color == null || radius <= 0)
+            return;
+
+        svg.append("<circle cx=\"");
+        appendNumber(svg, scale.x(index));
+        svg.append("\" cy=\"");
+        appendNumber(svg, scale.y(range.clip(values[index])));
+        svg.append("\" r=\"");
+        appendNumber(svg, radius);
+        svg.append("\" fill=\"").append(color).append("\"/>");
+    }
+
+    private String renderBar(float[] values, SparklineOptions options) {
+        int n = values.length;
+        int barWidth = number(options, "barWidth", 4).intValue();
+        int barSpacing = number(options, "barSpacing", 1).intValue();
+        int width = Math.max(n * (barWidth + barSpacing) - barSpacing, 1);
+        int height = pixels(options, "height", DEFAULT_HEIGHT);
+        String barColor = color(options, "barColor", "#00f");
+        String negBarColor = color(options, "negBarColor", "#f44");
+        String zeroColor = color(options, "zeroColor", null);
+
+        Range range = new Range(values, options);
+        if (options.getBoolean("zeroAxis", true))
+            range.include(0);
+
+        Scale scale = new Scale(range, n, 0, width, height, 0);
+        float zero = scale.y(range.clip(0));
+
+        StringBuilder svg = open(width, height);
+        for (int i = 0; i < n; i++) {
+            float value = range.clip(values[i]);
+            String color = value < 0 ? negBarColor : value == 0 && zeroColor != null ? zeroColor : barColor;
+            if (color == null)
+                continue;
+
+            float y = scale.y(value);
+            float top = Math.min(y, zero);
+            float barHeight = Math.max(Math.abs(zero - y), 1);
+            svg.append("<rect x=\"").append(i * (barWidth + barSpacing)).append("\" y=\"");
+            appendNumber(svg, value < 0 ? top : Math.min(top, zero - 1));
+            svg.append("\" width=\"").append(barWidth).append("\" height=\"");
+            appendNumber(svg, barHeight);
+            svg.append("\" fill=\"").append(color).append("\"/>");
+        }
+        return svg.append("</svg>").toString();
+    }
+
+    private String renderPie(float[] values, SparklineOptions options) {
+        int height = pixels(options, "height", DEFAULT_HEIGHT);
+        int width = pixels(options, "width", height);
+        float radius = Math.min(width, height) / 2f;
+        float offset = number(options, "offset", 0).floatValue();
+        String[] colors = sliceColors(options);
+
+        float total = 0;
+        for (float v : values) {
+            if (v > 0)
+                total += v;
+        }
+
+        StringBuilder svg = open(width, height);
+        double angle = Math.toRadians(offset - 90);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] <= 0)
+                continue;
+
+            String color = colors[i % colors.length];
+            if (values[i] >= total) {
+                svg.append("<circle cx=\"");
+                appendNumber(svg, width / 2f);
+                svg.append("\" cy=\"");
+                appendNumber(svg, height / 2f);
+                svg.append("\" r=\"");
+                appendNumber(svg, radius);
+                svg.append("\" fill=\"").append(color).append("\"/>");
+                continue;
+            }
+
+            double end = angle + 2 * Math.PI * values[i] / total;
+            svg.append("<path d=\"M");
+            appendNumber(svg, width / 2f);
+            svg.append(',');
+            appendNumber(svg, height / 2f);
+            svg.append('L');
+            appendNumber(svg, width / 2f + radius * Math.cos(angle));
+            svg.append(',');
+            appendNumber(svg, height / 2f + radius * Math.sin(angle));
+            svg.append('A');
+            appendNumber(svg, radius);
+            svg.append(',');
+            appendNumber(svg, radius);
+            svg.append(" 0 ").append(end - angle > Math.PI ? 1 : 0).append(",1 ");
+            appendNumber(svg, width / 2f + radius * Math.cos(end));
+            svg.append(',');
+            appendNumber(svg, height / 2f + radius * Math.sin(end));
+            svg.append("Z\" fill=\"").append(color).append("\"/>");
+            angle = end;
+        }
+        return svg.append("</svg>").toString();
+    }
+
+    private static StringBuilder open(int width, int height) {
+        return new StringBuilder(512).append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+                .append("\" height=\"").append(height).append("\" viewBox=\"0 0 ").append(width).append(' ')
+                .append(height).append("\" style=\"display:inline-block;vertical-align:top\">");
+    }
+
+    /**
+     * Appends the given number rounded to two decimal places.
+     */
+    private static void appendNumber(StringBuilder buf, double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            buf.append('-');
+            hundredths = -hundredths;
+        }
+        buf.append(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction != 0) {
+            buf.append('.').append(fraction / 10);
+            if (fraction % 10 != 0)
+                buf.append(fraction % 10);
+        }
+    }
+
+    /**
+     * @return string value of the given option without quotes or the default value if not set
+     */
+    private static String string(SparklineOptions options, String key, String defaultValue) {
+        Object value = options.getObject(key);
+        if (value == null)
+            return defaultValue;
+
+        String s = value.toString();
+        if (s.length() >= 2 && (s.charAt(0) == '"' || s.charAt(0) == '\'') && s.charAt(s.length() - 1) == s.charAt(0))
+            s = s.substring(1, s.length() - 1);
+        return s;
+    }
+
+    /**
+     * @return escaped color of the given option, the default color if not set or <tt>true</tt> and <tt>null</tt> if
+     *         set to <tt>false</tt>
+     */
+    private static String color(SparklineOptions options, String key, String defaultColor) {
+        Object value = options.getObject(key);
+        if (Boolean.FALSE.equals(value))
+            return null;
+
+        String color = value == null || Boolean.TRUE.equals(value) ? defaultColor : string(options, key, defaultColor);
+        return color != null ? Strings.escapeMarkup(color).toString() : null;
+    }
+
+    private static Number number(SparklineOptions options, String key, Number defaultValue) {
+        Object value = options.getObject(key);
+        if (value instanceof Number)
+            return (Number) value;
+
+        if (value != null) {
+            try {
+                return Float.valueOf(string(options, key, null));
+            } catch (NumberFormatException e) {
+                // not a number, use the default
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return given css size in pixels or the default value if not set or not specified in pixels
+     */
+    private static int pixels(SparklineOptions options, String key, int defaultValue) {
+        String size = string(options, key, null);
+        if (size == null)
+            return defaultValue;
+
+        size = size.trim();
+        if (size.endsWith("px"))
+            size = size.substring(0, size.length() - 2).trim();
+        try {
+            return Math.max(Math.round(Float.parseFloat(size)), 1);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String[] sliceColors(SparklineOptions options) {
+        Object value = options.getObject("sliceColors");
+        if (!(value instanceof CharSequence[]) || ((CharSequence[]) value).length == 0)
+            return DEFAULT_SLICE_COLORS;
+
+        CharSequence[] colors = (CharSequence[]) value;
+        String[] result = new String[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            result[i] = Strings.escapeMarkup(String.valueOf(colors[i])).toString();
+        }
+        return result;
+    }
+
+    /**
+     * Value range of a chart, see the <tt>chartRangeMin</tt>, <tt>chartRangeMax</tt> and <tt>chartRangeClip</tt>
+     * options.
+     */
+    private static class Range {
+
+        private float min = Float.MAX_VALUE;
+
+        private float max = -Float.MAX_VALUE;
+
+        private final boolean clip;
+
+        Range(float[] values, SparklineOptions options) {
+            this.clip = options.getBoolean("chartRangeClip", false);
+            if (!this.clip || !options.containsKey("chartRangeMin") || !options.containsKey("chartRangeMax")) {
+                for (float v : values) {
+                    this.include(v);
+                }
+            }
+            if (options.containsKey("chartRangeMin")) {
+                float rangeMin = number(options, "chartRangeMin", 0).floatValue();
+                this.min = this.clip ? rangeMin : Math.min(this.min, rangeMin);
+            }
+            if (options.containsKey("chartRangeMax")) {
+                float rangeMax = number(options, "chartRangeMax", 0).floatValue();
+                this.max = this.clip ? rangeMax : Math.max(this.max, rangeMax);
+            }
+            if (this.min > this.max) {
+                this.min = 0;
+                this.max = 0;
+            }
+        }
+
+        void include(float value) {
+            this.min = Math.min(this.min, value);
+            this.max = Math.max(this.max, value);
+        }
+
+        float clip(float value) {
+            return this.clip ? Math.max(this.min, Math.min(this.max, value)) : value;
+        }
+    }
+
+    /**
+     * Maps value indexes and values to the given drawing area (top-down y axis).
+     */
+    private static class Scale {
+
+        private final Range range;
+
+        private final int count;
+
+        private final float left, right, bottom, top;
+
+        Scale(Range range, int count, float left, float right, float bottom, float top) {
+            this.range = range;
+            this.count = count;
+            this.left = left;
+            this.right = right;
+            this.bottom = bottom;
+            this.top = top;
+        }
+
+        float x(int index) {
+            return this.count > 1 ? this.left + (this.right - this.left) * index / (this.count - 1) : this.left;
+        }
+
+        float y(float value) {
+            float span = this.range.max - this.range.min;
+            if (span == 0)
+                return (this.top + this.bottom) / 2;
+            return this.bottom - (this.bottom - this.top) * (value - this.range.min) / span;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.google.code.jqwicket.ui.sparkline;
 
 
 import com.google.code.jqwicket.ui.JQWebMarkupContainer;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.model.IModel;
 
 /**
@@ -57,4 +58,13 @@ public class SparklineWebMarkupContainer extends
 		return new SparklineBehavior(options);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see com.google.code.jqwicket.ui.sparkline.ISparkline#update(org.apache.wicket.ajax.AjaxRequestTarget)
+	 */
+	public void update(AjaxRequestTarget ajaxRequestTarget) {
+		this.behavior.update(ajaxRequestTarget);
+	}
+
 }
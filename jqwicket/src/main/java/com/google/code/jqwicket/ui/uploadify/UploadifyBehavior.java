@@ -36,16 +36,16 @@ public class UploadifyBehavior extends JQComponentBehavior<UploadifyOptions>
 
     public UploadifyBehavior(UploadifyOptions options) {
         super(options);
-        if (!options.containsKey("uploader"))
-            options.put(
+        if (!this.options.containsKey("uploader"))
+            this.options.put(
                     "uploader", RequestCycle.get().urlFor(UploadifyOptions.SWF_UPLOADIFY_RESOURCE, null));
 
-        if (!options.containsKey("expressInstall"))
-            options.put(
+        if (!this.options.containsKey("expressInstall"))
+            this.options.put(
                     "expressInstall", RequestCycle.get().urlFor(UploadifyOptions.SWF_EXPRESS_INSTALL_RESOURCE, null));
 
-        if (!options.containsKey("cancelImg"))
-            options.put(
+        if (!this.options.containsKey("cancelImg"))
+            this.options.put(
                     "cancelImg", RequestCycle.get().urlFor(UploadifyOptions.PNG_CANCEL_RESOURCE, null));
     }
 
@@ -20,8 +20,10 @@ import com.google.code.jqwicket.api.AbstractJQOptions;
 import com.google.code.jqwicket.api.IJQFunction;
 import com.google.code.jqwicket.api.IJQStatement;
 import com.google.code.jqwicket.api.JQLiteral;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.resource.CssResourceReference;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
 
 import static com.google.code.jqwicket.api.JQuery.$f;
 import static com.google.code.jqwicket.api.JQuery.js;
@@ -307,6 +309,16 @@ public class UploadifyOptions extends AbstractJQOptions<UploadifyOptions> {
         return this;
     }
 
+    /**
+     * Points the script option to the given resource, typically a mounted {@link UploadifyUploadResource}.
+     *
+     * @param script
+     * @return
+     */
+    public UploadifyOptions script(ResourceReference script) {
+        return this.script(RequestCycle.get().urlFor(script, null));
+    }
+
     /**
      * The scriptAccess option sets the scriptAccess property for the flash button file. Setting this option to "always"
      * can alleviate some issues during testing that involve communication problems between the flash file and the HTML
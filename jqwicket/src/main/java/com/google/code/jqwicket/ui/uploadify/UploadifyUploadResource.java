@@ -0,0 +1,574 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.uploadify;
+
+import com.google.code.jqwicket.Utils;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.io.Streams;
+import org.apache.wicket.util.upload.FileItemIterator;
+import org.apache.wicket.util.upload.FileItemStream;
+import org.apache.wicket.util.upload.FileUploadBase;
+import org.apache.wicket.util.upload.FileUploadException;
+import org.apache.wicket.util.upload.ServletFileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Upload back-end for the uploadify plugin. Request bodies are streamed straight into the target file through a
+ * {@link FileChannel}, nothing is buffered in memory or in temporary files.
+ * <p/>
+ * Besides the multipart uploads of the plugin, the resource accepts uploads split into chunks: every chunk is sent as
+ * raw request body (<tt>POST</tt> or <tt>PUT</tt>) with the file name in the <tt>name</tt> parameter and its position
+ * either in a <tt>Content-Range: bytes start-end/total</tt> header or in the <tt>offset</tt> and <tt>total</tt>
+ * parameters. The total size is required for every chunk but a single one starting at offset 0.
+ * <p/>
+ * Every upload is identified by an id issued by the server: a request without the <tt>id</tt> parameter starts a new
+ * upload, its id is returned in the <tt>X-Upload-Id</tt> header and has to be passed with the following chunks.
+ * Received data is kept in a part file of the upload until the total size is reached, so an interrupted upload is
+ * resumed from the offset returned by a <tt>GET</tt> request with the <tt>id</tt> parameter instead of being restarted.
+ * Only clients knowing the id are able to continue or to inspect an upload. Multipart uploads may pass the same
+ * parameters as form fields preceding the file.
+ * <p/>
+ * A complete upload never replaces an existing file unless overwriting is enabled, see
+ * {@link #withOverwrite(boolean)}, and the size of uploaded files is limited to {@value #DEFAULT_MAX_FILE_SIZE} bytes
+ * by default, see {@link #withMaxFileSize(long)}. Part files of abandoned uploads are deleted once they haven't been
+ * written to for a day, see {@link #withPartTimeToLive(long)}.
+ * <p/>
+ * At most <tt>maxConcurrentUploads</tt> uploads are received at the same time, further ones are refused with
+ * <tt>503 Service Unavailable</tt> and a <tt>Retry-After</tt> header.
+ * <p/>
+ * The resource is meant to be mounted once, e.g.
+ * <p/>
+ * <pre>
+ * mountResource(&quot;upload&quot;, new ResourceReference(&quot;upload&quot;) {
+ *     private final UploadifyUploadResource resource = new UploadifyUploadResource(new File(&quot;/var/uploads&quot;), 4)
+ *             .withMaxFileSize(4L * 1024 * 1024 * 1024);
+ *
+ *     public IResource getResource() {
+ *         return resource;
+ *     }
+ * });
+ * </pre>
+ * <p/>
+ * and passed to the plugin with {@link UploadifyOptions#script(org.apache.wicket.request.resource.ResourceReference)}.
+ *
+ * @author mkalina
+ */
+public class UploadifyUploadResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(UploadifyUploadResource.class);
+
+    public static final String PARAM_ID = "id";
+
+    public static final String PARAM_NAME = "name";
+
+    public static final String PARAM_OFFSET = "offset";
+
+    public static final String PARAM_TOTAL = "total";
+
+    public static final String HEADER_ID = "X-Upload-Id";
+
+    public static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 4;
+
+    public static final long DEFAULT_MAX_FILE_SIZE = 100L * 1024 * 1024;
+
+    public static final long DEFAULT_PART_TIME_TO_LIVE = 24L * 60 * 60 * 1000;
+
+    /**
+     * Name of the subdirectory of the upload directory the part files are kept in.
+     */
+    private static final String PARTS_DIRECTORY = ".parts";
+
+    private static final String PART_SUFFIX = ".part";
+
+    /**
+     * Suffix of the marker files of finished uploads.
+     */
+    private static final String DONE_SUFFIX = ".done";
+
+    /**
+     * Minimal interval between two sweeps of the part files in milliseconds.
+     */
+    private static final long SWEEP_INTERVAL = 60 * 1000;
+
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{32}");
+
+    /**
+     * Allowance for the boundaries, headers and form fields of a multipart request on top of the maximal file size.
+     */
+    private static final long MULTIPART_OVERHEAD = 64 * 1024;
+
+    /**
+     * Maximal number of bytes moved by a single {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+     */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-\\d+/(\\d+)");
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final File directory;
+
+    private final Semaphore uploads;
+
+    private volatile long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+
+    private volatile boolean overwrite = false;
+
+    private volatile long partTimeToLive = DEFAULT_PART_TIME_TO_LIVE;
+
+    private volatile long lastSweep = 0;
+
+    public UploadifyUploadResource(File directory) {
+        this(directory, DEFAULT_MAX_CONCURRENT_UPLOADS);
+    }
+
+    /**
+     * @param directory            is the directory the uploaded files are stored to
+     * @param maxConcurrentUploads is the maximal number of uploads received at the same time
+     */
+    public UploadifyUploadResource(File directory, int maxConcurrentUploads) {
+        if (maxConcurrentUploads <= 0)
+            throw new IllegalArgumentException("maxConcurrentUploads must be greater than 0");
+
+        this.directory = directory;
+        this.uploads = new Semaphore(maxConcurrentUploads);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Limits the size of uploaded files, larger uploads are refused with <tt>413 Request Entity Too Large</tt>.<br/>
+     * Default limit is {@value #DEFAULT_MAX_FILE_SIZE} bytes.
+     *
+     * @param maxFileSize is the maximal size of an uploaded file in bytes, a negative value for no limit
+     * @return
+     */
+    public UploadifyUploadResource withMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Lets complete uploads replace existing files of the same name. By default such uploads are refused with
+     * <tt>409 Conflict</tt>.
+     *
+     * @param overwrite
+     * @return
+     */
+    public UploadifyUploadResource withOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+        return this;
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    /**
+     * Configures how long the part files of unfinished uploads are kept after they have been written to for the last
+     * time. Expired part files are deleted whenever a new upload is started, the upload can't be resumed any more.<br/>
+     * Default is one day.
+     *
+     * @param partTimeToLive is the time to live of part files in milliseconds, a negative value to keep them forever
+     * @return
+     */
+    public UploadifyUploadResource withPartTimeToLive(long partTimeToLive) {
+        this.partTimeToLive = partTimeToLive;
+        return this;
+    }
+
+    public long getPartTimeToLive() {
+        return partTimeToLive;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.wicket.request.resource.AbstractResource#newResourceResponse(org.apache.wicket.request.resource.IResource.Attributes)
+     */
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        HttpServletRequest request = (HttpServletRequest) attributes.getRequest().getContainerRequest();
+
+        ResourceResponse response = new ResourceResponse();
+        response.disableCaching();
+        response.setContentType("text/plain");
+        response.setTextEncoding("UTF-8");
+
+        try {
+            String method = request.getMethod();
+            if ("GET".equals(method) || "HEAD".equals(method)) {
+                text(response, String.valueOf(this.received(id(request.getParameter(PARAM_ID)))));
+            } else if ("POST".equals(method) || "PUT".equals(method)) {
+                if (!this.uploads.tryAcquire()) {
+                    // headers of the resource response aren't written for errors
+                    ((WebResponse) attributes.getResponse()).setHeader("Retry-After", RETRY_AFTER_SECONDS);
+                    response.setError(503, "Too many concurrent uploads");
+                    return response;
+                }
+                try {
+                    text(response, ServletFileUpload.isMultipartContent(request) ? this.receiveMultipart(request,
+                            (WebResponse) attributes.getResponse()) : this.receiveChunk(request,
+                            (WebResponse) attributes.getResponse()));
+                } finally {
+                    this.uploads.release();
+                }
+            } else {
+                response.setError(405, "Method " + method + " not allowed");
+            }
+        } catch (UploadException e) {
+            response.setError(e.status, e.getMessage());
+        } catch (IOException e) {
+            log.warn("Upload failed", e);
+            response.setError(500, "Upload failed");
+        }
+        return response;
+    }
+
+    /**
+     * Called as soon as a file has been uploaded completely.
+     *
+     * @param file is the uploaded file
+     */
+    protected void onUploaded(File file) {
+    }
+
+    /**
+     * Returns the name the uploaded file is stored under. Strips the path of the client side name, override to use a
+     * naming scheme of your own.
+     *
+     * @param clientName is the file name given by the client
+     * @return file name inside of the upload directory
+     */
+    protected String fileName(String clientName) throws UploadException {
+        String name = clientName != null ? clientName.substring(
+                Math.max(clientName.lastIndexOf('/'), clientName.lastIndexOf('\\')) + 1).trim() : null;
+        if (Utils.isBlank(name) || ".".equals(name) || "..".equals(name) || PARTS_DIRECTORY.equals(name))
+            throw new UploadException(400, "Missing or invalid file name");
+
+        return name;
+    }
+
+    private CharSequence receiveMultipart(HttpServletRequest request, WebResponse response) throws UploadException,
+            IOException {
+        String id = request.getParameter(PARAM_ID);
+        String name = request.getParameter(PARAM_NAME);
+        long offset = parseLong(request.getParameter(PARAM_OFFSET), 0);
+        long total = parseLong(request.getParameter(PARAM_TOTAL), -1);
+        CharSequence result = null;
+        try {
+            ServletFileUpload upload = new ServletFileUpload();
+            if (this.maxFileSize >= 0) {
+                upload.setFileSizeMax(this.maxFileSize);
+                upload.setSizeMax(this.maxFileSize + MULTIPART_OVERHEAD);
+            }
+            FileItemIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                InputStream in = item.openStream();
+                try {
+                    if (item.isFormField()) {
+                        // fields sent before the file
+                        if (PARAM_ID.equals(item.getFieldName()))
+                            id = Streams.readString(in);
+                        else if (PARAM_NAME.equals(item.getFieldName()))
+                            name = Streams.readString(in, "UTF-8");
+                        else if (PARAM_OFFSET.equals(item.getFieldName()))
+                            offset = parseLong(Streams.readString(in), 0);
+                        else if (PARAM_TOTAL.equals(item.getFieldName()))
+                            total = parseLong(Streams.readString(in), -1);
+                    } else if (Utils.isNotBlank(item.getName())) {
+                        result = this.receive(id != null ? id(id) : null, this.fileName(name != null ? name
+                                : item.getName()), offset, total, in, response);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (FileUploadBase.FileUploadIOException e) {
+            // thrown by the item stream as soon as a size limit is exceeded
+            throw new UploadException(413, e.getCause().getMessage());
+        } catch (FileUploadBase.SizeLimitExceededException e) {
+            throw new UploadException(413, e.getMessage());
+        } catch (FileUploadBase.FileSizeLimitExceededException e) {
+            throw new UploadException(413, e.getMessage());
+        } catch (FileUploadException e) {
+            throw new UploadException(400, e.getMessage());
+        }
+
+        if (result == null)
+            throw new UploadException(400, "No file uploaded");
+
+        return result;
+    }
+
+    private CharSequence receiveChunk(HttpServletRequest request, WebResponse response) throws UploadException,
+            IOException {
+        long offset = parseLong(request.getParameter(PARAM_OFFSET), 0);
+        long total = parseLong(request.getParameter(PARAM_TOTAL), -1);
+
+        String range = request.getHeader("Content-Range");
+        if (range != null) {
+            Matcher m = CONTENT_RANGE.matcher(range);
+            if (!m.matches())
+                throw new UploadException(400, "Invalid Content-Range " + range);
+
+            offset = Long.parseLong(m.group(1));
+            total = Long.parseLong(m.group(2));
+        }
+
+        String id = request.getParameter(PARAM_ID);
+        InputStream in = request.getInputStream();
+        try {
+            return this.receive(id != null ? id(id) : null, this.fileName(request.getParameter(PARAM_NAME)), offset,
+                    total, in, response);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the given stream into the part file of the given upload, starting at the given offset. Data already
+     * received beyond the offset is discarded, so that a chunk can be sent again. The part file is renamed to the given
+     * name as soon as the total size is reached, or at once if a single request carries the whole file. The upload is
+     * marked as finished then, further chunks of it are refused.
+     * <p/>
+     * A new upload is started if no id is given, the id of the upload is returned to the client in the
+     * {@value #HEADER_ID} header.
+     *
+     * @return the file name if the upload is complete, the number of bytes received so far otherwise
+     */
+    private CharSequence receive(String id, String name, long offset, long total, InputStream in,
+                                 WebResponse response) throws UploadException, IOException {
+        if (total < 0 && offset > 0)
+            throw new UploadException(400, "Missing total size of " + name);
+        if (total >= 0 && offset > total)
+            throw new UploadException(416, "Offset " + offset + " beyond total size " + total + " of " + name);
+        if (this.maxFileSize >= 0 && (total > this.maxFileSize || offset > this.maxFileSize))
+            throw new UploadException(413, name + " exceeds the maximal file size of " + this.maxFileSize + " bytes");
+
+        File target = new File(this.directory, name);
+        if (!this.overwrite && target.exists())
+            throw new UploadException(409, name + " already exists");
+
+        File parts = new File(this.directory, PARTS_DIRECTORY);
+        if (!parts.exists() && !parts.mkdirs() && !parts.isDirectory())
+            throw new IOException("Can't create upload directory " + parts);
+
+        File part;
+        if (id == null) {
+            if (offset > 0)
+                throw new UploadException(416, "Offset " + offset + " beyond received 0 bytes");
+            this.sweep(parts);
+            id = UUID.randomUUID().toString().replace("-", "");
+            part = new File(parts, id + PART_SUFFIX);
+        } else {
+            // ids are issued by the server only
+            part = new File(parts, id + PART_SUFFIX);
+            if (!part.exists())
+                throw new UploadException(404, "Unknown upload " + id);
+        }
+        response.setHeader(HEADER_ID, id);
+
+        File done = new File(parts, id + DONE_SUFFIX);
+        long size;
+        RandomAccessFile file = new RandomAccessFile(part, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            FileLock lock = lock(channel);
+            if (lock == null)
+                throw new UploadException(409, "Upload " + id + " already in progress");
+
+            try {
+                if (done.exists()) {
+                    // finished by a concurrent request, opening the part file may have created it again
+                    part.delete();
+                    throw new UploadException(409, "Upload " + id + " already finished");
+                }
+                if (offset > channel.size())
+                    throw new UploadException(416, "Offset " + offset + " beyond received " + channel.size()
+                            + " bytes");
+
+                channel.truncate(offset);
+                long limit = total >= 0 ? total : this.maxFileSize >= 0 ? this.maxFileSize : Long.MAX_VALUE;
+                ReadableByteChannel source = Channels.newChannel(in);
+                size = offset;
+                try {
+                    long transferred;
+                    while (size < limit && (transferred = channel.transferFrom(source, size, Math.min(TRANSFER_SIZE,
+                            limit - size))) > 0)
+                        size += transferred;
+
+                    if (size == limit && in.read() >= 0)
+                        size = -1;
+                } catch (FileUploadBase.FileUploadIOException e) {
+                    // size limit of the multipart request exceeded
+                    size = -1;
+                }
+
+                if (size < 0) {
+                    channel.truncate(offset);
+                    if (offset == 0)
+                        part.delete();
+                    if (total >= 0)
+                        throw new UploadException(400, "Chunk of " + name + " exceeds the total size of " + total
+                                + " bytes");
+                    throw new UploadException(413, name + " exceeds the maximal file size of " + this.maxFileSize
+                            + " bytes");
+                }
+
+                if (total >= 0 && size < total) {
+                    log.debug("received {} of {} bytes of {}", new Object[]{size, total, name});
+                    return String.valueOf(size);
+                }
+
+                // finished while still holding the lock, so that no further chunk can write to the part file
+                // the part is kept on conflicts, so that the upload can be finished under another name
+                if (target.exists() && !(this.overwrite && target.delete()))
+                    throw new UploadException(409, name + " already exists");
+                if (!done.createNewFile() && !done.exists())
+                    throw new IOException("Can't mark upload " + id + " as finished");
+                if (!part.renameTo(target)) {
+                    done.delete();
+                    throw new IOException("Can't move " + part + " to " + target);
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            file.close();
+        }
+
+        log.debug("received {} ({} bytes)", name, size);
+        this.onUploaded(target);
+        return name;
+    }
+
+    /**
+     * @return number of bytes received of the part file of the given upload
+     */
+    private long received(String id) throws UploadException {
+        File part = new File(new File(this.directory, PARTS_DIRECTORY), id + PART_SUFFIX);
+        if (!part.exists())
+            throw new UploadException(404, "Unknown upload " + id);
+
+        return part.length();
+    }
+
+    /**
+     * Deletes part files and finished markers which haven't been modified for longer than the time to live of part
+     * files. Runs at most once per {@value #SWEEP_INTERVAL} milliseconds.
+     */
+    private void sweep(File parts) {
+        long now = System.currentTimeMillis();
+        if (this.partTimeToLive < 0 || now - this.lastSweep < SWEEP_INTERVAL)
+            return;
+
+        this.lastSweep = now;
+        File[] files = parts.listFiles();
+        if (files == null)
+            return;
+
+        for (File f : files) {
+            if (now - f.lastModified() > this.partTimeToLive && f.delete())
+                log.debug("deleted expired {}", f);
+        }
+    }
+
+    private static String id(String id) throws UploadException {
+        if (id == null || !ID.matcher(id).matches())
+            throw new UploadException(400, "Missing or invalid upload id");
+
+        return id;
+    }
+
+    private static FileLock lock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // locked by another request of this vm
+            return null;
+        }
+    }
+
+    private static long parseLong(String value, long defaultValue) throws UploadException {
+        if (Utils.isBlank(value))
+            return defaultValue;
+
+        try {
+            long result = Long.parseLong(value.trim());
+            if (result < 0)
+                throw new UploadException(400, "Negative number " + value);
+            return result;
+        } catch (NumberFormatException e) {
+            throw new UploadException(400, "Invalid number " + value);
+        }
+    }
+
+    private static void text(ResourceResponse response, final CharSequence text) {
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) {
+                attributes.getResponse().write(text);
+            }
+        });
+    }
+
+    /**
+     * Refusal of an upload, answered with the given HTTP status.
+     */
+    protected static class UploadException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        public UploadException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+}
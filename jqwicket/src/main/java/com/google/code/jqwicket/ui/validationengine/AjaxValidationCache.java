@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.jqwicket.ui.validationengine;
+
+import com.google.code.jqwicket.JQCache;
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+
+/**
+ * Application-wide cache of ajax validation results, used by rules caching their results, see
+ * {@link AjaxValidationRule#cacheResults(org.apache.wicket.util.time.Duration)}. Results are keyed by the rule (its
+ * class and name), the validated value and the extra data, and expire after the time to live of the rule.
+ *
+ * @author mkalina
+ */
+public class AjaxValidationCache {
+
+    private static final MetaDataKey<AjaxValidationCache> cacheKey = new MetaDataKey<AjaxValidationCache>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private static final int defaultMaxSize = 10000;
+
+    private final JQCache<Key, Result> cache;
+
+    public AjaxValidationCache(int maxSize) {
+        this.cache = new JQCache<Key, Result>(maxSize);
+    }
+
+    /**
+     * @return cache of the current application, created with a default size of 10000 results on first access
+     */
+    public static AjaxValidationCache get() {
+        Application application = Application.get();
+        AjaxValidationCache cache = application.getMetaData(cacheKey);
+        if (cache == null) {
+            synchronized (application) {
+                cache = application.getMetaData(cacheKey);
+                if (cache == null) {
+                    cache = new AjaxValidationCache(defaultMaxSize);
+                    application.setMetaData(cacheKey, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Replaces the cache of the current application, e.g. to use a different size.
+     *
+     * @param cache
+     */
+    public static void set(AjaxValidationCache cache) {
+        Application.get().setMetaData(cacheKey, cache);
+    }
+
+    /**
+     * @return cached result or <tt>null</tt> if nothing (or only an expired result) is cached
+     */
+    public Boolean get(AjaxValidationRule rule, String value, String extraData) {
+        Key key = new Key(rule, value, extraData);
+        Result result = this.cache.get(key);
+        if (result == null)
+            return null;
+
+        if (result.expires - System.currentTimeMillis() <= 0) {
+            this.cache.remove(key, result);
+            return null;
+        }
+        return result.valid;
+    }
+
+    /**
+     * Caches the given result for the given time to live.
+     */
+    public void put(AjaxValidationRule rule, String value, String extraData, boolean valid, long timeToLiveMillis) {
+        Key key = new Key(rule, value, extraData);
+        Result result = new Result(valid, System.currentTimeMillis() + timeToLiveMillis);
+        Result cached = this.cache.put(key, result);
+        if (cached != result && cached.expires - System.currentTimeMillis() <= 0 && this.cache.remove(key, cached))
+            this.cache.put(key, result);
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.cache.getHits();
+    }
+
+    public long getMisses() {
+        return this.cache.getMisses();
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    private static final class Result {
+
+        private final boolean valid;
+
+        private final long expires;
+
+        private Result(boolean valid, long expires) {
+            this.valid = valid;
+            this.expires = expires;
+        }
+    }
+
+    private static final class Key {
+
+        private final String rule;
+
+        private final String value;
+
+        private final String extraData;
+
+        private final int hashCode;
+
+        private Key(AjaxValidationRule rule, String value, String extraData) {
+            this.rule = rule.getClass().getName() + '#' + rule.getName();
+            this.value = value;
+            this.extraData = extraData;
+            int h = this.rule.hashCode();
+            h = 31 * h + (value != null ? value.hashCode() : 0);
+            h = 31 * h + (extraData != null ? extraData.hashCode() : 0);
+            this.hashCode = h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.rule.equals(other.rule) && equal(this.value, other.value)
+                    && equal(this.extraData, other.extraData);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.apache.wicket.behavior.AbstractAjaxBehavior;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.handler.TextRequestHandler;
 import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.util.time.Duration;
 
 import java.io.Serializable;
 
@@ -39,6 +40,13 @@ public abstract class AjaxValidationRule extends
 
     private AbstractAjaxBehavior ajaxBehavior;
 
+    /**
+     * Form-level endpoint validating all ajax rules of the form, see {@link ValidationEngineFormBehavior}.
+     */
+    private AbstractAjaxBehavior formBehavior;
+
+    private long cacheMillis;
+
     private CharSequence alertTextOk;
 
     private CharSequence alertTextLoad;
@@ -86,6 +94,64 @@ public abstract class AjaxValidationRule extends
 
     protected abstract boolean execute(ExecutionContext ctx);
 
+    /**
+     * Caches the results of {@link #execute(ExecutionContext)} application-wide for the given time, keyed by the rule,
+     * the validated value and the extra data, see {@link AjaxValidationCache}. Only use it for rules whose results do
+     * not depend on anything else, e.g. the current user.
+     *
+     * @param timeToLive
+     * @return
+     */
+    public AjaxValidationRule cacheResults(Duration timeToLive) {
+        this.cacheMillis = timeToLive != null ? timeToLive.getMilliseconds() : 0;
+        return this;
+    }
+
+    /**
+     * Executes the rule, answering from the {@link AjaxValidationCache} if the rule caches its results.
+     */
+    boolean validate(ExecutionContext ctx) {
+        if (this.cacheMillis <= 0)
+            return this.execute(ctx);
+
+        AjaxValidationCache cache = AjaxValidationCache.get();
+        Boolean valid = cache.get(this, ctx.getValue(), ctx.getExtraData());
+        if (valid == null) {
+            valid = this.execute(ctx);
+            cache.put(this, ctx.getValue(), ctx.getExtraData(), valid, this.cacheMillis);
+        }
+        return valid;
+    }
+
+    /**
+     * Renders the validation result in the form expected by the plugin: <tt>['fieldId','ruleName','true']</tt>.
+     */
+    static CharSequence toJson(String validateId, String validateError, boolean valid) {
+        return new StringBuffer("[").append(Utils.quote(escape(validateId))).append(",")
+                .append(Utils.quote(escape(validateError))).append(",")
+                .append(Utils.quote(String.valueOf(valid))).append("]");
+    }
+
+    /**
+     * Escapes the given value to be used inside of a single- or double-quoted javascript (or json) string literal.
+     */
+    static CharSequence escape(CharSequence value) {
+        if (value == null)
+            return null;
+
+        StringBuilder buf = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"')
+                buf.append('\\').append(c);
+            else if (c < 0x20 || c == '\'' || c == '<' || c == '>' || c == '\u2028' || c == '\u2029')
+                buf.append(String.format("\\u%04x", (int) c));
+            else
+                buf.append(c);
+        }
+        return buf;
+    }
+
     protected AbstractAjaxBehavior newAjaxBehavior() {
         return new AbstractAjaxBehavior() {
 
@@ -96,21 +162,23 @@ public abstract class AjaxValidationRule extends
                 String validateError = req.getRequestParameters().getParameterValue("validateError").toString();
                 String validateId = req.getRequestParameters().getParameterValue("validateId").toString();
 
-                boolean result = execute(new ExecutionContext(validateError,
+                boolean result = validate(new ExecutionContext(validateError,
                         validateId, req.getRequestParameters().getParameterValue("validateValue").toString(),
                         req.getRequestParameters().getParameterValue("extraData").toString()));
 
                 StringBuffer buf = new StringBuffer("{'jsonValidateReturn':");
-                buf.append("[").append(Utils.quote(validateId));
-                buf.append(",").append(Utils.quote(validateError));
-                buf.append(",").append(Utils.quote(String.valueOf(result)));
-                buf.append("]}");
+                buf.append(toJson(validateId, validateError, result));
+                buf.append("}");
                 RequestCycle.get().scheduleRequestHandlerAfterCurrent(
                         new TextRequestHandler(buf.toString()));
             }
         };
     }
 
+    void setFormBehavior(AbstractAjaxBehavior formBehavior) {
+        this.formBehavior = formBehavior;
+    }
+
     public AbstractAjaxBehavior getAjaxBehavior() {
         if (this.ajaxBehavior == null) {
             this.ajaxBehavior = this.newAjaxBehavior();
@@ -127,7 +195,8 @@ public abstract class AjaxValidationRule extends
     protected CharSequence customPayloadToJson() {
         StringBuffer buf = new StringBuffer();
         buf.append(quote("file")).append(":")
-                .append(quote(this.getAjaxBehavior().getCallbackUrl()));
+                .append(quote(this.formBehavior != null ? this.formBehavior.getCallbackUrl() : this
+                        .getAjaxBehavior().getCallbackUrl()));
         if (isNotBlank(this.alertTextOk)) {
             buf.append(",").append(quote("alertTextOk")).append(":")
                     .append(quote(this.alertTextOk));
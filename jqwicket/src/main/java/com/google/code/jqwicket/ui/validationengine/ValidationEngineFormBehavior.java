@@ -16,18 +16,28 @@
  */
 package com.google.code.jqwicket.ui.validationengine;
 
-import com.google.code.jqwicket.JQContributionConfig;
 import com.google.code.jqwicket.JQHeaderContributionTarget;
+import com.google.code.jqwicket.JQRenderContext;
 import com.google.code.jqwicket.Utils;
 import com.google.code.jqwicket.api.JQuery;
 import com.google.code.jqwicket.ui.JQComponentBehavior;
 import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.behavior.AbstractAjaxBehavior;
 import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.markup.html.IHeaderResponse;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.FormComponent;
+import org.apache.wicket.request.IRequestParameters;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.TextRequestHandler;
+import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
 
 import java.util.Collection;
-import java.util.UUID;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author mkalina
@@ -38,6 +48,8 @@ public class ValidationEngineFormBehavior extends
 
     private static final long serialVersionUID = 1L;
 
+    private AbstractAjaxBehavior validationBehavior;
+
     public ValidationEngineFormBehavior() {
         this(new ValidationEngineOptions());
     }
@@ -71,8 +83,9 @@ public class ValidationEngineFormBehavior extends
         Collection<AjaxValidationRule> ajaxRules = this.options
                 .getAjaxValidationRules();
         if (Utils.isNotEmpty(ajaxRules)) {
+            component.add(this.getValidationBehavior());
             for (AjaxValidationRule r : ajaxRules) {
-                component.add(r.getAjaxBehavior());
+                r.setFormBehavior(this.getValidationBehavior());
             }
         }
 
@@ -85,7 +98,7 @@ public class ValidationEngineFormBehavior extends
 
                     @Override
                     public void renderHead(Component component, IHeaderResponse response) {
-                        response.renderJavaScript(r.getFuncDef(), UUID.randomUUID().toString());
+                        response.renderJavaScript(r.getFuncDef(), Utils.scriptId(r.getFuncDef()));
                     }
                 });
             }
@@ -104,9 +117,7 @@ public class ValidationEngineFormBehavior extends
             throw new IllegalStateException(
                     "ValidationEngineFormBehavior can only be added to the Form or its subclasses!");
 
-        JQContributionConfig config = JQContributionConfig.get();
-        CharSequence prefix = Utils.isNotBlank(config.getNonConflictAlias()) ? config
-                .getNonConflictAlias() : "$";
+        CharSequence prefix = JQRenderContext.get().getJQueryPrefix();
 
         final StringBuffer buf = new StringBuffer();
         if (options.hasValidationRules()) {
@@ -140,9 +151,117 @@ public class ValidationEngineFormBehavior extends
 
         }
 
+        if (Utils.isNotEmpty(options.getAjaxValidationRules()))
+            buf.append(this.ajaxValidationBatching(prefix));
+
         if (buf.length() > 0)
             target.addJQStatements(JQuery.js(buf));
 
         super.contributeInternal(target);
     }
+
+    public AbstractAjaxBehavior getValidationBehavior() {
+        if (this.validationBehavior == null)
+            this.validationBehavior = this.newValidationBehavior();
+        return this.validationBehavior;
+    }
+
+    /**
+     * Creates the form-level endpoint validating all ajax rules of the form. A validation is given by the
+     * <tt>validateValue</tt>, <tt>validateId</tt>, <tt>validateError</tt> (rule name) and <tt>extraData</tt>
+     * parameters and answered as expected by the plugin. Batched requests (<tt>batch</tt> parameter) carry several
+     * validations with the parameters prefixed by their index (<tt>0_validateId</tt>, ...) and are answered with the
+     * json array of the plugin responses of all validations. A batch may carry at most one validation per ajax rule and
+     * form component, larger ones are refused with <tt>400 Bad Request</tt>.
+     *
+     * @return
+     */
+    protected AbstractAjaxBehavior newValidationBehavior() {
+        return new AbstractAjaxBehavior() {
+
+            private static final long serialVersionUID = 1L;
+
+            public void onRequest() {
+                IRequestParameters params = RequestCycle.get().getRequest().getRequestParameters();
+
+                Map<String, AjaxValidationRule> ajaxRules = new HashMap<String, AjaxValidationRule>();
+                Collection<AjaxValidationRule> rules = options.getAjaxValidationRules();
+                if (rules != null) {
+                    for (AjaxValidationRule r : rules) {
+                        ajaxRules.put(String.valueOf(r.getName()), r);
+                    }
+                }
+
+                StringBuffer buf = new StringBuffer();
+                if (params.getParameterValue("batch").isEmpty()) {
+                    buf.append("{'jsonValidateReturn':").append(validate(params, "", ajaxRules)).append("}");
+                } else {
+                    int max = ajaxRules.size() * countFormComponents(this.getComponent());
+                    if (!params.getParameterValue(max + "_validateId").isEmpty())
+                        throw new AbortWithHttpErrorCodeException(400, "More than " + max + " validations");
+
+                    buf.append("[");
+                    for (int i = 0; !params.getParameterValue(i + "_validateId").isEmpty(); i++) {
+                        if (i > 0)
+                            buf.append(",");
+                        // every result is passed to the plugin as it is, the client doesn't have to rebuild it
+                        buf.append("\"").append(AjaxValidationRule.escape("{'jsonValidateReturn':"
+                                + validate(params, i + "_", ajaxRules) + "}")).append("\"");
+                    }
+                    buf.append("]");
+                }
+
+                RequestCycle.get().scheduleRequestHandlerAfterCurrent(new TextRequestHandler(buf.toString()));
+            }
+        };
+    }
+
+    private static int countFormComponents(Component form) {
+        if (!(form instanceof MarkupContainer))
+            return 0;
+
+        final int[] count = {0};
+        ((MarkupContainer) form).visitChildren(FormComponent.class, new IVisitor<Component, Void>() {
+            public void component(Component component, IVisit<Void> visit) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    private static CharSequence validate(IRequestParameters params, String prefix,
+                                         Map<String, AjaxValidationRule> ajaxRules) {
+        String id = params.getParameterValue(prefix + "validateId").toString();
+        String name = params.getParameterValue(prefix + "validateError").toString();
+        AjaxValidationRule rule = ajaxRules.get(name);
+        boolean valid = rule != null && rule.validate(new AjaxValidationRule.ExecutionContext(name, id, params
+                .getParameterValue(prefix + "validateValue").toString(), params.getParameterValue(
+                prefix + "extraData").toString()));
+        return AjaxValidationRule.toJson(id, name, valid);
+    }
+
+    /**
+     * Renders the client side batching of the ajax validations: an ajax transport catches the requests of the plugin
+     * to the validation endpoint, collects them for the configured delay (dropping older validations of the same field
+     * and rule, which are aborted) and sends them in a single request, passing each result back to its plugin request.
+     */
+    private CharSequence ajaxValidationBatching(CharSequence prefix) {
+        StringBuilder js = new StringBuilder(1024);
+        js.append("(function($,u,d){var g=$.jqwValidationBatches=$.jqwValidationBatches||{};")
+                .append("if(!$.ajaxTransport||g[u])return;g[u]=true;var q=[],t=null;")
+                .append("function f(){t=null;var b=q,s=[],i;q=[];")
+                .append("for(i=0;i<b.length;i++)s.push(b[i].d.replace(/(^|&)([^&=]+)=/g,\"$1\"+i+\"_$2=\"));")
+                .append("$.ajax({type:\"POST\",url:u+\"&batch=true\",data:s.join(\"&\"),dataType:\"json\",")
+                .append("success:function(a){for(i=0;i<b.length;i++){if(typeof a[i]===\"string\")")
+                .append("b[i].c(200,\"success\",{text:a[i]});else b[i].c(500,\"error\");}},")
+                .append("error:function(x,e){for(i=0;i<b.length;i++)b[i].c(x.status||500,e);}});}")
+                .append("$.ajaxTransport(\"+*\",function(o){if(o.url!==u||typeof o.data!==\"string\")return;")
+                .append("var e,k=(/(?:^|&)validateId=([^&]*)/.exec(o.data)||[])[1]+\"|\"+(/(?:^|&)validateError=([^&]*)/.exec(o.data)||[])[1];")
+                .append("return{send:function(h,c){for(var i=0;i<q.length;i++)if(q[i].k===k){q.splice(i,1)[0].c(0,\"abort\");break;}")
+                .append("e={k:k,d:o.data,c:c};q.push(e);if(t)clearTimeout(t);t=setTimeout(f,d);},")
+                .append("abort:function(){for(var i=0;i<q.length;i++)if(q[i]===e){q.splice(i,1);break;}}};});})(")
+                .append(prefix).append(",\"").append(this.getValidationBehavior().getCallbackUrl()).append("\",")
+                .append(this.options.getAjaxValidationDelay()).append(");\n");
+        return js;
+    }
 }
@@ -78,6 +78,8 @@ public class ValidationEngineOptions extends
 
     private boolean validationRulesResourceSpecified;
 
+    private int ajaxValidationDelay = 250;
+
     public ValidationEngineOptions(ValidationRule<?>... rules) {
         this(true, rules);
     }
@@ -111,6 +113,23 @@ public class ValidationEngineOptions extends
         this.validationRulesResourceSpecified = true;
     }
 
+    /**
+     * Delay (in ms) the ajax validations are collected for before they are sent to the server in a single request.
+     * Repeated validations of the same field within the delay, e.g. triggered by keystrokes, are sent only once with
+     * the latest value.<br> Default: 250
+     *
+     * @param ajaxValidationDelay
+     * @return
+     */
+    public ValidationEngineOptions ajaxValidationDelay(int ajaxValidationDelay) {
+        this.ajaxValidationDelay = ajaxValidationDelay;
+        return this;
+    }
+
+    public int getAjaxValidationDelay() {
+        return ajaxValidationDelay;
+    }
+
     /**
      * @return the validationRulesResourceSpecified
      */
@@ -42,6 +42,10 @@ public abstract class ValidationRule<T extends ValidationRule<T>> implements
 
 	protected abstract CharSequence customPayloadToJson();
 
+	public CharSequence getName() {
+		return name;
+	}
+
 	public char charAt(int index) {
 		return toString().charAt(index);
 	}